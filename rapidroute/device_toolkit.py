@@ -5,6 +5,18 @@ from com.uwaterloo.watcag import CustomDesign as api
 def init(num_jobs):
     api.init(num_jobs)
 
+def set_template_search_heuristic(enabled=True):
+    api.setTemplateSearchHeuristic(enabled)
+
+def set_bidirectional_template_search(enabled=True):
+    api.setBidirectionalTemplateSearch(enabled)
+
+def set_negotiated_congestion(enabled=True):
+    api.setNegotiatedCongestion(enabled)
+
+def set_route_library(enabled=True):
+    api.setRouteLibrary(enabled)
+
 def new_design(design_name, part_name):
     api.newDesign(design_name, part_name)
 
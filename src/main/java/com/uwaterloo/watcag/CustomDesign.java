@@ -46,6 +46,22 @@ public class CustomDesign {
         RouterLog.init(RouterLog.Level.INFO);
     }
 
+    public static void setTemplateSearchHeuristic(boolean useDistanceHeuristic) {
+        TemplateSearchJob.setDistanceHeuristic(useDistanceHeuristic);
+    }
+
+    public static void setBidirectionalTemplateSearch(boolean useBidirectionalSearch) {
+        TemplateSearchJob.setBidirectionalSearch(useBidirectionalSearch);
+    }
+
+    public static void setNegotiatedCongestion(boolean useNegotiatedCongestion) {
+        DesignRouter.setNegotiatedCongestion(useNegotiatedCongestion);
+    }
+
+    public static void setRouteLibrary(boolean useRouteLibrary) {
+        DesignRouter.setRouteLibrary(useRouteLibrary);
+    }
+
     public static Design newDesign(String designName, String partName) {
 
         if (coreDesign != null)
@@ -8,6 +8,7 @@ import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 public class RegisterConnection {
 
@@ -28,6 +29,8 @@ public class RegisterConnection {
     private int snkRegLowestBit;
     private int snkRegHighestBit;
 
+    private String congruencySignature;
+
     public RegisterConnection(ComplexRegister srcReg, ComplexRegister snkReg, int srcRegLowestBit, int srcRegHighestBit,
                               int snkRegLowestBit, int snkRegHighestBit) {
         this.srcReg = srcReg;
@@ -50,101 +53,70 @@ public class RegisterConnection {
         this.bitWidth = Math.max(srcRegHighestBit - srcRegLowestBit + 1, snkRegHighestBit - snkRegLowestBit + 1);
     }
 
-    public boolean isCongruentWith(Design d, RegisterConnection connection) {
-        if (bitWidth != connection.getBitWidth())
-            return false;
-
-        // No congruency for input and output connections
-        if (isInputConnection || connection.isInputConnection())
-            return false;
-        if (isOutputConnection || connection.isOutputConnection())
-            return false;
-
-        ArrayList<Pair<Tile, String>> srcPIPNames = new ArrayList<>();
-        ArrayList<Pair<Tile, String>> snkPIPNames = new ArrayList<>();
-        for (int i = 0; i < bitWidth; i++) {
-            srcPIPNames.add(null);
-            snkPIPNames.add(null);
-        }
-
-        {
-            int bitIndex = 0;
-            for (RegisterComponent component : srcReg.getComponents()) {
-                Tile intTile = d.getDevice().getSite(component.getSiteName()).getIntTile();
-                for (int i = 0; i < component.getBitWidth(); i++, bitIndex++) {
-                    if (bitIndex >= srcRegLowestBit && bitIndex <= srcRegHighestBit)
-                        srcPIPNames.set(bitIndex - srcRegLowestBit,
-                                new ImmutablePair<>(intTile, component.getOutPIPName(i)));
-                }
-            }
-        }
-        {
-            int bitIndex = 0;
-            for (RegisterComponent component : snkReg.getComponents()) {
-                Tile intTile = d.getDevice().getSite(component.getSiteName()).getIntTile();
-                for (int i = 0; i < component.getBitWidth(); i++, bitIndex++) {
-                    if (bitIndex >= snkRegLowestBit && bitIndex <= snkRegHighestBit)
-                        snkPIPNames.set(bitIndex - snkRegLowestBit,
-                                new ImmutablePair<>(intTile, component.getInPIPName(i)));
-                }
+    /*
+     * Per-bit INT tile and PIP name of one side of the connection, in bit order
+     */
+    private static ArrayList<Pair<Tile, String>> getBitPIPNames(Design d, ComplexRegister reg, int lowestBit,
+                                                                int highestBit, boolean isSrc) {
+        ArrayList<Pair<Tile, String>> pipNames = new ArrayList<>();
+
+        int bitIndex = 0;
+        for (RegisterComponent component : reg.getComponents()) {
+            Tile intTile = d.getDevice().getSite(component.getSiteName()).getIntTile();
+            for (int i = 0; i < component.getBitWidth(); i++, bitIndex++) {
+                if (bitIndex >= lowestBit && bitIndex <= highestBit)
+                    pipNames.add(new ImmutablePair<>(intTile, isSrc ? component.getOutPIPName(i)
+                            : component.getInPIPName(i)));
             }
         }
 
-        ArrayList<Pair<Tile, String>> offsetSrcPIPNames = new ArrayList<>();
-        ArrayList<Pair<Tile, String>> offsetSnkPIPNames = new ArrayList<>();
-        for (int i = 0; i < bitWidth; i++) {
-            offsetSrcPIPNames.add(null);
-            offsetSnkPIPNames.add(null);
-        }
-
+        return pipNames;
+    }
 
-        {
-            int bitIndex = 0;
-            for (RegisterComponent component : connection.getSrcReg().getComponents()) {
-                Tile intTile = d.getDevice().getSite(component.getSiteName()).getIntTile();
-                for (int i = 0; i < component.getBitWidth(); i++, bitIndex++) {
-                    if (bitIndex >= connection.getSrcRegLowestBit() && bitIndex <= connection.getSrcRegHighestBit())
-                        offsetSrcPIPNames.set(bitIndex - connection.getSrcRegLowestBit(),
-                                new ImmutablePair<>(intTile, component.getOutPIPName(i)));
-                }
-            }
-        }
-        {
-            int bitIndex = 0;
-            for (RegisterComponent component : connection.getSnkReg().getComponents()) {
-                Tile intTile = d.getDevice().getSite(component.getSiteName()).getIntTile();
-                for (int i = 0; i < component.getBitWidth(); i++, bitIndex++) {
-                    if (bitIndex >= connection.getSnkRegLowestBit() && bitIndex <= connection.getSnkRegHighestBit())
-                        offsetSnkPIPNames.set(bitIndex - connection.getSnkRegLowestBit(),
-                                new ImmutablePair<>(intTile, component.getInPIPName(i)));
+    /*
+     * Canonical form of the connection, such that two connections are congruent iff their signatures are equal
+     *   Lists the PIP names of every bit, with the INT tile of each bit relative to the source tile of bit 0
+     *   Input and output connections are never congruent to anything, so they have no signature (null)
+     */
+    public String getCongruencySignature(Design d) {
+        if (isInputConnection || isOutputConnection)
+            return null;
+
+        if (congruencySignature == null) {
+            ArrayList<Pair<Tile, String>> srcPIPNames = getBitPIPNames(d, srcReg, srcRegLowestBit, srcRegHighestBit,
+                    true);
+            ArrayList<Pair<Tile, String>> snkPIPNames = getBitPIPNames(d, snkReg, snkRegLowestBit, snkRegHighestBit,
+                    false);
+
+            int refX = srcPIPNames.get(0).getLeft().getTileXCoordinate();
+            int refY = srcPIPNames.get(0).getLeft().getTileYCoordinate();
+
+            StringBuilder signature = new StringBuilder();
+            signature.append(bitWidth);
+            for (int i = 0; i < bitWidth; i++) {
+                for (Pair<Tile, String> pipName : Arrays.asList(srcPIPNames.get(i), snkPIPNames.get(i))) {
+                    signature.append(';').append(pipName.getRight())
+                            .append('@').append(pipName.getLeft().getTileXCoordinate() - refX)
+                            .append(',').append(pipName.getLeft().getTileYCoordinate() - refY);
                 }
             }
-        }
-
-        // Ensure PIP names are identical and tile offset is constant
-        int dx = srcPIPNames.get(0).getLeft().getTileXCoordinate() - offsetSrcPIPNames.get(0).getLeft().getTileXCoordinate();
-        int dy = srcPIPNames.get(0).getLeft().getTileYCoordinate() - offsetSrcPIPNames.get(0).getLeft().getTileYCoordinate();
-        for (int i = 0; i < bitWidth; i++) {
-            if (!srcPIPNames.get(i).getRight().equals(offsetSrcPIPNames.get(i).getRight()))
-                return false;
-
-            if (!snkPIPNames.get(i).getRight().equals(offsetSnkPIPNames.get(i).getRight()))
-                return false;
-
-            if (srcPIPNames.get(i).getLeft().getTileXCoordinate() - offsetSrcPIPNames.get(i).getLeft().getTileXCoordinate() != dx)
-                return false;
-            if (srcPIPNames.get(i).getLeft().getTileYCoordinate() - offsetSrcPIPNames.get(i).getLeft().getTileYCoordinate() != dy)
-                return false;
-
-            if (snkPIPNames.get(i).getLeft().getTileXCoordinate() - offsetSnkPIPNames.get(i).getLeft().getTileXCoordinate() != dx)
-                return false;
-            if (snkPIPNames.get(i).getLeft().getTileYCoordinate() - offsetSnkPIPNames.get(i).getLeft().getTileYCoordinate() != dy)
-                return false;
 
+            congruencySignature = signature.toString();
         }
 
+        return congruencySignature;
+    }
 
-        return true;
+    /*
+     * INT tile of the lowest source bit, which congruency signatures are relative to
+     */
+    public Tile getSrcIntTile(Design d) {
+        return getBitPIPNames(d, srcReg, srcRegLowestBit, srcRegHighestBit, true).get(0).getLeft();
+    }
+
+    public boolean isCongruentWith(Design d, RegisterConnection connection) {
+        String signature = getCongruencySignature(d);
+        return signature != null && signature.equals(connection.getCongruencySignature(d));
     }
 
     public int getBitWidth() {
@@ -26,6 +26,8 @@ public class ResourcesManager {
     public static final String RESOURCES_DIR = "src/main/resources/";
     public static final String COMPONENTS_DIR = RESOURCES_DIR + "components/";
     public static final String OUTPUT_DIR = "output/";
+    public static final String FABRIC_CACHE_DIR = OUTPUT_DIR + "fabric-cache/";
+    public static final String ROUTE_LIBRARY_DIR = OUTPUT_DIR + "route-library/";
     public static final String DEFAULT_TEMPLATES_DIR = RESOURCES_DIR + "default-templates/";
 
     public static String COMPONENTS_FILE_NAME = ResourcesManager.RESOURCES_DIR + "components.conf";
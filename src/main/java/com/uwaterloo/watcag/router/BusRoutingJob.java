@@ -10,6 +10,8 @@ import com.xilinx.rapidwright.design.Design;
 
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class BusRoutingJob implements Callable<ArrayList<CustomRoute>> {
 
@@ -30,7 +32,8 @@ public class BusRoutingJob implements Callable<ArrayList<CustomRoute>> {
     private int bitWidth;
 
     private ArrayList<PriorityQueue<JunctionsTracer>> activeSearchQueues;
-    private ArrayList<Set<String>> activeSearchFootprints;
+    private ArrayList<TemplateSearchJob.BackwardSearch> activeBackwardSearches;
+    private ArrayList<Set<Integer>> activeSearchFootprints;
     private ArrayList<Set<EnterWireJunction>> snkLeadIns;
 
     private ArrayList<ArrayList<RouteTemplate>> templatesCache;
@@ -49,6 +52,7 @@ public class BusRoutingJob implements Callable<ArrayList<CustomRoute>> {
         bitWidth = srcs.size();
 
         activeSearchQueues = new ArrayList<>();
+        activeBackwardSearches = new ArrayList<>();
         activeSearchFootprints = new ArrayList<>();
         snkLeadIns = new ArrayList<>();
         templatesCache = new ArrayList<>();
@@ -57,7 +61,8 @@ public class BusRoutingJob implements Callable<ArrayList<CustomRoute>> {
         results = new ArrayList<>();
 
         for (int i = 0; i < bitWidth; i++) {
-            activeSearchQueues.add(new PriorityQueue<>(new RoutingCalculator.JunctionsTracerCostComparator()));
+            activeSearchQueues.add(TemplateSearchJob.newSearchQueue());
+            activeBackwardSearches.add(new TemplateSearchJob.BackwardSearch());
             activeSearchFootprints.add(new HashSet<>());
             snkLeadIns.add(new HashSet<>());
             templatesCache.add(new ArrayList<>());
@@ -102,6 +107,7 @@ public class BusRoutingJob implements Callable<ArrayList<CustomRoute>> {
         }
 
         activeSearchQueues = new ArrayList<>();
+        activeBackwardSearches = new ArrayList<>();
         activeSearchFootprints = new ArrayList<>();
         snkLeadIns = new ArrayList<>();
         templatesCache = new ArrayList<>();
@@ -110,7 +116,8 @@ public class BusRoutingJob implements Callable<ArrayList<CustomRoute>> {
         results = new ArrayList<>();
 
         for (int i = 0; i < bitWidth; i++) {
-            activeSearchQueues.add(new PriorityQueue<>(new RoutingCalculator.JunctionsTracerCostComparator()));
+            activeSearchQueues.add(TemplateSearchJob.newSearchQueue());
+            activeBackwardSearches.add(new TemplateSearchJob.BackwardSearch());
             activeSearchFootprints.add(new HashSet<>());
             snkLeadIns.add(new HashSet<>());
             templatesCache.add(new ArrayList<>());
@@ -144,7 +151,11 @@ public class BusRoutingJob implements Callable<ArrayList<CustomRoute>> {
         return activeSearchQueues.get(bitIndex);
     }
 
-    private Set<String> getActiveSearchFootprint(int bitIndex) {
+    private TemplateSearchJob.BackwardSearch getActiveBackwardSearch(int bitIndex) {
+        return activeBackwardSearches.get(bitIndex);
+    }
+
+    private Set<Integer> getActiveSearchFootprint(int bitIndex) {
         return activeSearchFootprints.get(bitIndex);
     }
 
@@ -172,30 +183,77 @@ public class BusRoutingJob implements Callable<ArrayList<CustomRoute>> {
 
 
 
+    /*
+     * Runs one task per bit on the bit pool and returns their results in bit order
+     *   Every task is joined before the first failure is rethrown, so no task outlives the call
+     */
+    private <T> ArrayList<T> invokePerBit(ArrayList<ForkJoinTask<T>> tasks) {
+        ForkJoinPool pool = DesignRouter.bitPool != null ? DesignRouter.bitPool : ForkJoinPool.commonPool();
+        for (ForkJoinTask<T> task : tasks)
+            pool.execute(task);
+
+        ArrayList<T> results = new ArrayList<>();
+        RuntimeException failure = null;
+        for (ForkJoinTask<T> task : tasks) {
+            try {
+                results.add(task.join());
+            } catch (RuntimeException e) {
+                if (failure == null)
+                    failure = e;
+                results.add(null);
+            }
+        }
+
+        if (failure != null)
+            throw failure;
+        return results;
+    }
+
+    private ArrayList<RouteTemplate> searchTemplates(int bitIndex, int batchSize) {
+        TemplateSearchJob job = new TemplateSearchJob(coreDesign, srcs.get(bitIndex), snks.get(bitIndex));
+        job.setBatchSize(batchSize);
+        job.setSearchQueue(getActiveSearchQueue(bitIndex));
+        job.setBackwardSearch(getActiveBackwardSearch(bitIndex));
+        job.setSearchFootprint(getActiveSearchFootprint(bitIndex));
+        job.setLeadIns(getLeadIns(bitIndex));
+        job.run();
+
+        return job.getResults();
+    }
+
+    private ArrayList<ArrayList<TilePath>> ditherSinkPaths(int bitIndex, ArrayList<EnterWireJunction> sinkEntrances) {
+        return FabricBrowser.ditherTilePathsFromExit(coreDesign, SINK_TILE_TRAVERSAL_MAX_DEPTH, sinkEntrances,
+                snks.get(bitIndex));
+    }
+
     private boolean findWorkingTemplates(int batchSize) {
 
-        ArrayList<ArrayList<RouteTemplate>> newBatch = new ArrayList<>();
+        // Bits are searched independently of each other, since none of them lock any wires until the routes are set
+        ArrayList<ForkJoinTask<ArrayList<RouteTemplate>>> searchTasks = new ArrayList<>();
         for (int i = 0; i < bitWidth; i++) {
-            TemplateSearchJob job = new TemplateSearchJob(coreDesign, srcs.get(i), snks.get(i));
-            job.setBatchSize(batchSize);
-            job.setSearchQueue(getActiveSearchQueue(i));
-            job.setSearchFootprint(getActiveSearchFootprint(i));
-            job.setLeadIns(getLeadIns(i));
-            job.run();
-
-            newBatch.add(job.getResults());
-            templatesCache.get(i).addAll(job.getResults());
+            int bitIndex = i;
+            searchTasks.add(ForkJoinTask.adapt(() -> searchTemplates(bitIndex, batchSize)));
         }
+        ArrayList<ArrayList<RouteTemplate>> newBatch = invokePerBit(searchTasks);
 
+        ArrayList<ArrayList<EnterWireJunction>> newSinkEntrances = new ArrayList<>();
+        ArrayList<ForkJoinTask<ArrayList<ArrayList<TilePath>>>> ditherTasks = new ArrayList<>();
         for (int i = 0; i < bitWidth; i++) {
-            ArrayList<EnterWireJunction> newSinkEntrances = new ArrayList<>();
+            templatesCache.get(i).addAll(newBatch.get(i));
+
+            ArrayList<EnterWireJunction> sinkEntrances = new ArrayList<>();
             for (RouteTemplate template : newBatch.get(i))
-                newSinkEntrances.add((EnterWireJunction) template.getTemplate(-2));
+                sinkEntrances.add((EnterWireJunction) template.getTemplate(-2));
+            newSinkEntrances.add(sinkEntrances);
+
+            int bitIndex = i;
+            ditherTasks.add(ForkJoinTask.adapt(() -> ditherSinkPaths(bitIndex, sinkEntrances)));
+        }
+        ArrayList<ArrayList<ArrayList<TilePath>>> newSinkPaths = invokePerBit(ditherTasks);
 
-            ArrayList<ArrayList<TilePath>> newSinkPaths = FabricBrowser.ditherTilePathsFromExit(coreDesign,
-                    SINK_TILE_TRAVERSAL_MAX_DEPTH, newSinkEntrances, snks.get(i));
-            for (int j = 0; j < newSinkPaths.size(); j++) {
-                cacheSinkPaths(newSinkEntrances.get(j), newSinkPaths.get(j), i);
+        for (int i = 0; i < bitWidth; i++) {
+            for (int j = 0; j < newSinkPaths.get(i).size(); j++) {
+                cacheSinkPaths(newSinkEntrances.get(i).get(j), newSinkPaths.get(i).get(j), i);
             }
         }
 
@@ -220,29 +278,23 @@ public class BusRoutingJob implements Callable<ArrayList<CustomRoute>> {
                 threshMin = min;
         }
 
-        ArrayList<HashSet<TilePath>> tilePathsPool = new ArrayList<>();
+        // Solver keeps its paths across thresholds, and each threshold only searches the choices using its new paths
+        TilePathAssignmentSolver solver = new TilePathAssignmentSolver(bitWidth);
         for (int i = 0; i < bitWidth; i++) {
-            HashSet<TilePath> pathChoices = new HashSet<>();
             for (RouteTemplate template : templatesCache.get(i)) {
-                if (template.getEstimatedCost() < threshMin) {
-                    pathChoices.addAll(getSinkPaths((EnterWireJunction) template.getTemplate(-2), i));
-                }
+                if (template.getEstimatedCost() < threshMin)
+                    solver.admit(i, getSinkPaths((EnterWireJunction) template.getTemplate(-2), i));
             }
-            tilePathsPool.add(pathChoices);
         }
 
         // Iterating up to the highest cost, increase the pool each time until a configuration can be found
         for (int threshold = threshMin; threshold <= threshMax; threshold++) {
-            ArrayList<HashSet<TilePath>> newCandidates = new ArrayList<>();
-            for (int i = 0; i < bitWidth; i++)
-                newCandidates.add(new HashSet<>());
-
             int additionsToCandidatePool = 0;
             for (int i = 0; i < bitWidth; i++) {
                 ArrayList<RouteTemplate> candidates = templatesCache.get(i);
                 for (RouteTemplate candidate : candidates) {
                     if (candidate.getEstimatedCost() == threshold) {
-                        newCandidates.get(i).addAll(getSinkPaths((EnterWireJunction) candidate.getTemplate(-2), i));
+                        solver.admit(i, getSinkPaths((EnterWireJunction) candidate.getTemplate(-2), i));
 
                         additionsToCandidatePool += 1;
                     }
@@ -253,35 +305,19 @@ public class BusRoutingJob implements Callable<ArrayList<CustomRoute>> {
             if (additionsToCandidatePool == 0)
                 continue;
 
-            for (int i = 0; i < bitWidth; i++) {
-                if (newCandidates.get(i).isEmpty())
-                    continue;
-
-                ArrayList<HashSet<TilePath>> candidates = new ArrayList<>(tilePathsPool);
-                candidates.set(i, newCandidates.get(i));
-
-                ArrayList<TilePath> results = RoutingCalculator.deriveValidTilePaths(candidates);
+            ArrayList<TilePath> results = solver.solveAdmitted();
 
-                if (results != null) {
-                    for (int j = 0; j < bitWidth; j++) {
-                        for (RouteTemplate template : templatesCache.get(j)) {
-                            if (template.getTemplate(-2).equals(results.get(j).getEnterJunction())) {
-                                validTemplates.add(template);
-                                break;
-                            }
+            if (results != null) {
+                for (int j = 0; j < bitWidth; j++) {
+                    for (RouteTemplate template : templatesCache.get(j)) {
+                        if (template.getTemplate(-2).equals(results.get(j).getEnterJunction())) {
+                            validTemplates.add(template);
+                            break;
                         }
                     }
-
-                    break;
                 }
-            }
 
-            if (!validTemplates.isEmpty())
                 break;
-
-            // Increment new candidates into pool for next round
-            for (int i = 0; i < bitWidth; i++) {
-                tilePathsPool.get(i).addAll(newCandidates.get(i));
             }
         }
 
@@ -299,8 +335,8 @@ public class BusRoutingJob implements Callable<ArrayList<CustomRoute>> {
         ArrayList<ArrayList<TilePath>> allRoutes = new ArrayList<>();
         ArrayList<Integer> bitArray = new ArrayList<>();
         ArrayList<Integer> junctionIndexes = new ArrayList<>();
-        HashSet<String> committedNodes = new HashSet<>();
-        ArrayList<HashSet<String>> banList = new ArrayList<>();
+        HashSet<Integer> committedNodes = new HashSet<>();
+        ArrayList<HashSet<Integer>> banList = new ArrayList<>();
         for (int i = 0; i < bitWidth; i++) {
             allRoutes.add(new ArrayList<>());
             bitArray.add(i);
@@ -333,13 +369,13 @@ public class BusRoutingJob implements Callable<ArrayList<CustomRoute>> {
             EnterWireJunction previousHop = (EnterWireJunction) junctions.get(junctionIndex + 1);
 
             boolean isValid;
-            if (committedNodes.contains(previousHop.getNodeName())
-                    || (!previousHop.isSrc() && committedNodes.contains(previousHop.getSrcJunction(coreDesign).getNodeName()))) {
+            if (committedNodes.contains(previousHop.getNodeId())
+                    || (!previousHop.isSrc() && committedNodes.contains(previousHop.getSrcJunction(coreDesign).getNodeId()))) {
                 // Conflict found in hops
                 isValid = false;
 
-                banList.get(bitIndex).add(previousHop.getNodeName());
-                banList.get(bitIndex).add(previousHop.getSrcJunction(coreDesign).getNodeName());
+                banList.get(bitIndex).add(previousHop.getNodeId());
+                banList.get(bitIndex).add(previousHop.getSrcJunction(coreDesign).getNodeId());
             }
             else {
                 TilePath path = FabricBrowser.findClosestTilePath(coreDesign, previousHop, thisHop, committedNodes);
@@ -348,19 +384,20 @@ public class BusRoutingJob implements Callable<ArrayList<CustomRoute>> {
                     // Conflict / un-routable found in tile paths
                     isValid = false;
 
-                    banList.get(bitIndex).add(previousHop.getNodeName());
+                    banList.get(bitIndex).add(previousHop.getNodeId());
                     if (!previousHop.isSrc())
-                        banList.get(bitIndex).add(previousHop.getSrcJunction(coreDesign).getNodeName());
+                        banList.get(bitIndex).add(previousHop.getSrcJunction(coreDesign).getNodeId());
                 }
                 else {
                     // No conflict
                     isValid = true;
                     allRoutes.get(bitIndex).add(0, path);
 
-                    committedNodes.addAll(path.getNodePath());
+                    for (int nodeId : path.getNodePath())
+                        committedNodes.add(nodeId);
 
                     if (!previousHop.isSrc())
-                        committedNodes.add(previousHop.getSrcJunction(coreDesign).getNodeName());
+                        committedNodes.add(previousHop.getSrcJunction(coreDesign).getNodeId());
                 }
             }
 
@@ -368,12 +405,13 @@ public class BusRoutingJob implements Callable<ArrayList<CustomRoute>> {
                 // Rip-up and reroute
 
                 for (TilePath path : allRoutes.get(bitIndex)) {
-                    committedNodes.removeAll(path.getNodePath());
+                    for (int nodeId : path.getNodePath())
+                        committedNodes.remove(nodeId);
                 }
                 allRoutes.get(bitIndex).clear();
                 junctionIndexes.set(bitIndex, 2);
 
-                Set<String> nodesToAvoid = new HashSet<>(committedNodes);
+                Set<Integer> nodesToAvoid = new HashSet<>(committedNodes);
                 nodesToAvoid.addAll(banList.get(bitIndex));
 
                 ExitWireJunction detourSnk = (ExitWireJunction) junctions.get(2);
@@ -384,7 +422,7 @@ public class BusRoutingJob implements Callable<ArrayList<CustomRoute>> {
 
                 Set<EnterWireJunction> leadIns = new HashSet<>();
                 for (EnterWireJunction junction : FabricBrowser.findReachableEntrances(coreDesign, detourSnk)) {
-                    if (!nodesToAvoid.contains(junction.getNodeName()))
+                    if (!nodesToAvoid.contains(junction.getNodeId()))
                         leadIns.add(junction);
                 }
                 job.setLeadIns(leadIns);
@@ -0,0 +1,126 @@
+package com.uwaterloo.watcag.router;
+
+import com.uwaterloo.watcag.router.elements.CustomRoute;
+import com.uwaterloo.watcag.router.elements.TilePath;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class CongestionNegotiator {
+
+    /*
+     * PathFinder-style negotiated congestion: while negotiating, routes may share nodes at a price
+     *   Node cost = history cost + present factor * number of routes using the node
+     *   After each iteration, every overused node gains history cost and the present factor grows, so that routes are
+     *   gradually pushed off shared nodes by the routes that need them the most
+     *   Costs are kept sparse, as routes only ever touch a tiny fraction of the fabric graph
+     */
+
+    private static final int INITIAL_PRESENT_FACTOR = 1;
+    private static final int PRESENT_FACTOR_GROWTH = 2;
+    private static final int MAX_PRESENT_FACTOR = 1 << 12;
+    private static final int HISTORY_INCREMENT = 1;
+
+    private static volatile boolean isActive = false;
+    private static volatile int presentFactor = INITIAL_PRESENT_FACTOR;
+
+    private static final Map<Integer, Integer> nodeUsage = new ConcurrentHashMap<>();
+    private static final Map<Integer, Integer> historyCosts = new ConcurrentHashMap<>();
+
+    public static void reset() {
+        isActive = false;
+        presentFactor = INITIAL_PRESENT_FACTOR;
+        nodeUsage.clear();
+        historyCosts.clear();
+    }
+
+    /*
+     * Node costs are only charged between begin() and end(), so that routing outside of negotiation is unaffected
+     */
+    public static void begin() {
+        isActive = true;
+    }
+
+    public static void end() {
+        isActive = false;
+    }
+
+    public static boolean isActive() {
+        return isActive;
+    }
+
+    public static int getNodeCost(int nodeId) {
+        if (!isActive || nodeId < 0)
+            return 0;
+        return historyCosts.getOrDefault(nodeId, 0) + presentFactor * nodeUsage.getOrDefault(nodeId, 0);
+    }
+
+    public static int getTilePathCost(TilePath path) {
+        int cost = path.getCost();
+        for (int nodeId : path.getNodePath())
+            cost += getNodeCost(nodeId);
+        return cost;
+    }
+
+    /*
+     * Cheapest of the given tile paths under the current node costs, or null if there are none
+     */
+    public static TilePath selectCheapestTilePath(List<TilePath> paths) {
+        TilePath cheapest = null;
+        int minCost = Integer.MAX_VALUE;
+        for (TilePath path : paths) {
+            int cost = getTilePathCost(path);
+            if (cost < minCost) {
+                minCost = cost;
+                cheapest = path;
+            }
+        }
+        return cheapest;
+    }
+
+    public static void addRoute(CustomRoute route) {
+        for (TilePath path : route.getRoute()) {
+            for (int nodeId : path.getNodePath())
+                nodeUsage.merge(nodeId, 1, Integer::sum);
+        }
+    }
+
+    public static void removeRoute(CustomRoute route) {
+        for (TilePath path : route.getRoute()) {
+            for (int nodeId : path.getNodePath())
+                nodeUsage.computeIfPresent(nodeId, (k, v) -> v > 1 ? v - 1 : null);
+        }
+    }
+
+    public static boolean isOverused(int nodeId) {
+        return nodeUsage.getOrDefault(nodeId, 0) > 1;
+    }
+
+    public static boolean isOverused(CustomRoute route) {
+        for (TilePath path : route.getRoute()) {
+            for (int nodeId : path.getNodePath()) {
+                if (isOverused(nodeId))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Charges history cost to overused nodes and grows the present factor; returns the number of overused nodes
+     *   Must not be called while routes are being rerouted
+     */
+    public static int updateCosts() {
+        int overusedCount = 0;
+        for (Map.Entry<Integer, Integer> entry : nodeUsage.entrySet()) {
+            if (entry.getValue() > 1) {
+                historyCosts.merge(entry.getKey(), HISTORY_INCREMENT * (entry.getValue() - 1), Integer::sum);
+                overusedCount += 1;
+            }
+        }
+
+        presentFactor = Math.min(presentFactor * PRESENT_FACTOR_GROWTH, MAX_PRESENT_FACTOR);
+        return overusedCount;
+    }
+}
@@ -4,18 +4,23 @@ import com.uwaterloo.watcag.common.ComplexRegister;
 import com.uwaterloo.watcag.common.RegisterConnection;
 import com.uwaterloo.watcag.config.RegisterComponent;
 import com.uwaterloo.watcag.config.RegisterDefaults;
+import com.uwaterloo.watcag.router.browser.FabricBrowser;
+import com.uwaterloo.watcag.router.browser.FabricGraph;
 import com.uwaterloo.watcag.router.elements.*;
 import com.uwaterloo.watcag.util.RouterLog;
 import com.xilinx.rapidwright.design.Design;
 import com.xilinx.rapidwright.design.Net;
+import com.xilinx.rapidwright.device.PIP;
 import com.xilinx.rapidwright.device.Tile;
 import com.xilinx.rapidwright.edif.*;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.lang3.tuple.Triple;
 
 import java.util.*;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
 
 public class DesignRouter {
@@ -26,16 +31,27 @@ public class DesignRouter {
 
     private static Design coreDesign;
 
+    // Work-stealing, so that idle workers pick up the per-bit tasks of running bus routing jobs
     public static ExecutorService executor;
+    // Same pool as the executor; used by bus routing jobs to search the bits of a bus in parallel
+    public static ForkJoinPool bitPool;
 
     private static final Set<RegisterConnection> externalConnectionSet = new HashSet<>();
 
     private static final Set<RegisterConnection> connectionSet = new LinkedHashSet<>();
     private static final HashMap<RegisterConnection, ArrayList<RegisterConnection>> uniqueConnectionsSet = new LinkedHashMap<>();
+    // Reference connection of each congruency class, by congruency signature
+    private static final HashMap<String, RegisterConnection> congruencyClasses = new HashMap<>();
     private static final HashMap<RegisterConnection, RouteFootprint> routesMap = new HashMap<>();
 
     private static final Set<Pair<RegisterConnection, CustomRoute>> failedRoutes = new HashSet<>();
 
+    // Resolve conflicts between routes by negotiated congestion instead of steps 3 and 4
+    private static boolean useNegotiatedCongestion = false;
+    private static final int MAX_NEGOTIATION_ITERATIONS = 30;
+
+    private static boolean useRouteLibrary = false;
+
     private static int getXOffsetOfCongruentConnection(RegisterConnection ref, RegisterConnection offset) {
         Tile refIntTile = coreDesign.getDevice().getSite(ref.getSrcReg().getComponent(0).getSiteName()).getIntTile();
         Tile offsetIntTile = coreDesign.getDevice().getSite(offset.getSrcReg().getComponent(0).getSiteName()).getIntTile();
@@ -50,6 +66,44 @@ public class DesignRouter {
         return offsetIntTile.getTileYCoordinate() - refIntTile.getTileYCoordinate();
     }
 
+    /*
+     * Relative cost of routing a unique connection: bit width times the INT tile distance between the registers
+     */
+    private static int estimateRoutingCost(RegisterConnection connection) {
+        Tile srcIntTile = coreDesign.getDevice().getSite(connection.getSrcReg().getComponent(0).getSiteName()).getIntTile();
+        Tile snkIntTile = coreDesign.getDevice().getSite(connection.getSnkReg().getComponent(0).getSiteName()).getIntTile();
+
+        int dist = Math.abs(snkIntTile.getTileXCoordinate() - srcIntTile.getTileXCoordinate())
+                + Math.abs(snkIntTile.getTileYCoordinate() - srcIntTile.getTileYCoordinate());
+
+        return connection.getBitWidth() * (dist + 1);
+    }
+
+    private static int[] getNodeIds(List<WireJunction> junctions) {
+        int[] nodeIds = new int[junctions.size()];
+        for (int i = 0; i < junctions.size(); i++)
+            nodeIds[i] = junctions.get(i).getNodeId();
+        return nodeIds;
+    }
+
+    /*
+     * Every node used by a route, except its source and sink which belong to the route's registers
+     */
+    private static int[] getRouteNodeIds(CustomRoute route) {
+        ArrayList<Integer> nodeIds = new ArrayList<>();
+        for (TilePath path : route.getRoute()) {
+            for (int nodeId : path.getNodePath()) {
+                if (nodeId != route.getSrc().getNodeId() && nodeId != route.getSnk().getNodeId())
+                    nodeIds.add(nodeId);
+            }
+        }
+
+        int[] results = new int[nodeIds.size()];
+        for (int i = 0; i < nodeIds.size(); i++)
+            results[i] = nodeIds.get(i);
+        return results;
+    }
+
     private static RouteFootprint copyFootprintWithOffset(RegisterConnection connection, RouteFootprint ref, int dx, int dy) {
 
 
@@ -97,19 +151,35 @@ public class DesignRouter {
     }
 
     public static void initializeRouter(Design d, int threadPoolSize) {
-        reset();
         coreDesign = d;
-        executor = Executors.newFixedThreadPool(threadPoolSize);
+        FabricGraph.initialize(d);
+        reset();
+        bitPool = new ForkJoinPool(threadPoolSize);
+        executor = bitPool;
     }
 
     public static void reset() {
         externalConnectionSet.clear();
         connectionSet.clear();
         uniqueConnectionsSet.clear();
+        congruencyClasses.clear();
         routesMap.clear();
         failedRoutes.clear();
 
         RouteForge.reset();
+        FabricBrowser.reset();
+        CongestionNegotiator.reset();
+    }
+
+    public static void setNegotiatedCongestion(boolean useNegotiatedCongestion) {
+        DesignRouter.useNegotiatedCongestion = useNegotiatedCongestion;
+    }
+
+    /*
+     * Whether unique routes are cloned from the persistent route library where possible, and saved into it otherwise
+     */
+    public static void setRouteLibrary(boolean useRouteLibrary) {
+        DesignRouter.useRouteLibrary = useRouteLibrary;
     }
 
     public static void prepareNewConnectionForRouting(RegisterConnection connection) {
@@ -122,16 +192,12 @@ public class DesignRouter {
         connectionSet.add(connection);
 
         // Check for congruency
-        boolean isCongruent = false;
-        for (RegisterConnection c : uniqueConnectionsSet.keySet()) {
-            if (c.isCongruentWith(coreDesign, connection)) {
-                uniqueConnectionsSet.get(c).add(connection);
-                isCongruent = true;
-                break;
-            }
-        }
+        RegisterConnection ref = congruencyClasses.putIfAbsent(connection.getCongruencySignature(coreDesign),
+                connection);
 
-        if (!isCongruent)
+        if (ref != null)
+            uniqueConnectionsSet.get(ref).add(connection);
+        else
             uniqueConnectionsSet.put(connection, new ArrayList<>());
 
     }
@@ -184,6 +250,122 @@ public class DesignRouter {
         }
     }
 
+    /*
+     * Routes of all connections share nodes at a cost; each iteration rips up every route on an overused node and
+     *   reroutes them in parallel against the updated costs, until no node is overused
+     *   Routes still overlapping an earlier route after the last iteration are left to the serial reroute of step 6
+     */
+    private static void negotiateCongestion() throws Exception {
+        // Connection and route index order, as in step 3, so that rip-ups and the final claims are reproducible
+        ArrayList<Pair<RegisterConnection, CustomRoute>> allRoutes = new ArrayList<>();
+        for (RegisterConnection connection : connectionSet) {
+            RouteFootprint footprint = routesMap.get(connection);
+            if (footprint == null)
+                continue;
+
+            ArrayList<CustomRoute> routes = new ArrayList<>(footprint.getRoutes());
+            routes.sort(Comparator.comparingInt(CustomRoute::getRouteIndex));
+            for (CustomRoute route : routes)
+                allRoutes.add(Pair.of(connection, route));
+        }
+
+        CongestionNegotiator.begin();
+        for (Pair<RegisterConnection, CustomRoute> entry : allRoutes)
+            CongestionNegotiator.addRoute(entry.getRight());
+
+        for (int iteration = 0; iteration < MAX_NEGOTIATION_ITERATIONS; iteration++) {
+            long tIterationBegin = System.currentTimeMillis();
+
+            ArrayList<Integer> ripUps = new ArrayList<>();
+            for (int i = 0; i < allRoutes.size(); i++) {
+                if (CongestionNegotiator.isOverused(allRoutes.get(i).getRight()))
+                    ripUps.add(i);
+            }
+
+            if (ripUps.isEmpty()) {
+                RouterLog.log("Iteration " + iteration + ": converged.", RouterLog.Level.NORMAL);
+                break;
+            }
+
+            int overusedCount = CongestionNegotiator.updateCosts();
+
+            // Rip up all routes first, so that every reroute of the iteration sees the same costs
+            for (int i : ripUps)
+                CongestionNegotiator.removeRoute(allRoutes.get(i).getRight());
+
+            ArrayList<Future<CustomRoute>> rerouteResults = new ArrayList<>();
+            for (int i : ripUps) {
+                CustomRoute route = allRoutes.get(i).getRight();
+                SignalRoutingJob job = new SignalRoutingJob(coreDesign, route.getSrc(), route.getSnk());
+                rerouteResults.add(executor.submit(() -> {
+                    job.run();
+                    return job.getRoute();
+                }));
+            }
+
+            // Reroutes read the node costs, so usage is only updated once every reroute of the iteration is done
+            ArrayList<CustomRoute> newRoutes = new ArrayList<>();
+            for (int j = 0; j < ripUps.size(); j++) {
+                CustomRoute oldRoute = allRoutes.get(ripUps.get(j)).getRight();
+                try {
+                    newRoutes.add(rerouteResults.get(j).get());
+                } catch (ExecutionException e) {
+                    // Keep the old route; it is ripped up again next iteration if it is still overused
+                    RouterLog.log("Reroute of <" + oldRoute + "> failed: " + e.getCause().getMessage(),
+                            RouterLog.Level.INFO);
+                    newRoutes.add(oldRoute);
+                }
+            }
+
+            for (int j = 0; j < ripUps.size(); j++) {
+                RegisterConnection connection = allRoutes.get(ripUps.get(j)).getLeft();
+                CustomRoute oldRoute = allRoutes.get(ripUps.get(j)).getRight();
+                CustomRoute newRoute = newRoutes.get(j);
+
+                if (newRoute != oldRoute) {
+                    RouteFootprint footprint = routesMap.get(connection);
+                    Net net = footprint.getCorrespondingNet(oldRoute);
+
+                    newRoute.setRouteIndex(oldRoute.getRouteIndex());
+                    footprint.removeRoute(oldRoute);
+                    footprint.addRoute(newRoute, net);
+                }
+
+                CongestionNegotiator.addRoute(newRoute);
+                allRoutes.set(ripUps.get(j), Pair.of(connection, newRoute));
+            }
+
+            RouterLog.log("Iteration " + iteration + ": " + overusedCount + " overused nodes, " + ripUps.size()
+                    + " routes rerouted in " + (System.currentTimeMillis() - tIterationBegin) + " ms.",
+                    RouterLog.Level.NORMAL);
+        }
+
+        CongestionNegotiator.end();
+
+        // Routes keep their nodes in order; any route overlapping an earlier one is rerouted in step 6 around them
+        for (Pair<RegisterConnection, CustomRoute> entry : allRoutes) {
+            boolean isConflicted = false;
+            for (TilePath path : entry.getRight().getRoute()) {
+                for (int nodeId : path.getNodePath()) {
+                    if (RouteForge.isOccupied(nodeId)) {
+                        isConflicted = true;
+                        break;
+                    }
+                }
+            }
+
+            if (isConflicted) {
+                failedRoutes.add(entry);
+                continue;
+            }
+
+            for (TilePath path : entry.getRight().getRoute()) {
+                for (int nodeId : path.getNodePath())
+                    RouteForge.occupy(nodeId);
+            }
+        }
+    }
+
     /*
      * Master function for routing the design
      */
@@ -214,15 +396,15 @@ public class DesignRouter {
             for (RegisterComponent component : connection.getSrcReg().getComponents()) {
                 String intTileName = coreDesign.getDevice().getSite(component.getSiteName()).getIntTile().getName();
                 for (int i = 0; i < component.getBitWidth(); i++) {
-                    RouteForge.lock(intTileName + "/" + component.getInPIPName(i));
-                    RouteForge.lock(intTileName + "/" + component.getOutPIPName(i));
+                    RouteForge.lock(FabricGraph.getNodeId(intTileName, component.getInPIPName(i)));
+                    RouteForge.lock(FabricGraph.getNodeId(intTileName, component.getOutPIPName(i)));
                 }
             }
             for (RegisterComponent component : connection.getSnkReg().getComponents()) {
                 String intTileName = coreDesign.getDevice().getSite(component.getSiteName()).getIntTile().getName();
                 for (int i = 0; i < component.getBitWidth(); i++) {
-                    RouteForge.lock(intTileName + "/" + component.getInPIPName(i));
-                    RouteForge.lock(intTileName + "/" + component.getOutPIPName(i));
+                    RouteForge.lock(FabricGraph.getNodeId(intTileName, component.getInPIPName(i)));
+                    RouteForge.lock(FabricGraph.getNodeId(intTileName, component.getOutPIPName(i)));
                 }
             }
         }
@@ -239,23 +421,55 @@ public class DesignRouter {
         RouterLog.log("1: Routing unique routes.", RouterLog.Level.NORMAL);
         RouterLog.indent();
 
-        HashMap<RegisterConnection, Future<ArrayList<CustomRoute>>> routingJobResults = new HashMap<>();
-        for (RegisterConnection connection : uniqueConnectionsSet.keySet()) {
+        // Most expensive buses first, so that no large bus is left running alone at the end of the step
+        ArrayList<RegisterConnection> uniqueConnections = new ArrayList<>(uniqueConnectionsSet.keySet());
+        HashMap<RegisterConnection, Integer> routingCosts = new HashMap<>();
+        for (RegisterConnection connection : uniqueConnections)
+            routingCosts.put(connection, estimateRoutingCost(connection));
+        uniqueConnections.sort((c1, c2) -> Integer.compare(routingCosts.get(c2), routingCosts.get(c1)));
+
+        if (useRouteLibrary)
+            RouteLibrary.open(coreDesign);
+
+        ExecutorCompletionService<Pair<RegisterConnection, ArrayList<CustomRoute>>> routingJobResults =
+                new ExecutorCompletionService<>(executor);
+        int numLibraryRoutes = 0;
+        int numRoutingJobs = 0;
+        for (RegisterConnection connection : uniqueConnections) {
+            if (useRouteLibrary) {
+                ArrayList<CustomRoute> libraryRoutes = RouteLibrary.lookUp(coreDesign, connection);
+                if (libraryRoutes != null) {
+                    routesMap.put(connection, compileFootprint(connection, libraryRoutes));
+                    numLibraryRoutes += 1;
+                    continue;
+                }
+            }
+
             BusRoutingJob job = new BusRoutingJob(coreDesign, connection);
-            routingJobResults.put(connection, executor.submit(job));
+            routingJobResults.submit(() -> Pair.of(connection, job.call()));
+            numRoutingJobs += 1;
         }
 
-        for (RegisterConnection connection : routingJobResults.keySet()) {
+        for (int i = 0; i < numRoutingJobs; i++) {
             try {
-                ArrayList<CustomRoute> busResults = routingJobResults.get(connection).get();
-                RouteFootprint footprint = compileFootprint(connection, busResults);
-                routesMap.put(connection, footprint);
+                Pair<RegisterConnection, ArrayList<CustomRoute>> busResults = routingJobResults.take().get();
+                RouteFootprint footprint = compileFootprint(busResults.getLeft(), busResults.getRight());
+                routesMap.put(busResults.getLeft(), footprint);
+
+                // Recorded before any later step patches the routes in place
+                if (useRouteLibrary)
+                    RouteLibrary.add(coreDesign, busResults.getLeft(), busResults.getRight());
             } catch (Exception e) {
                 e.printStackTrace();
                 throw e;
             }
         }
 
+        if (useRouteLibrary) {
+            RouteLibrary.save(coreDesign);
+            RouterLog.log(numLibraryRoutes + " unique routes cloned from the route library.", RouterLog.Level.NORMAL);
+        }
+
         RouterLog.log("All unique routes routed in " + (System.currentTimeMillis() - tStep1Begin) + " ms.",
                 RouterLog.Level.NORMAL);
         RouterLog.indent(-1);
@@ -280,102 +494,157 @@ public class DesignRouter {
         RouterLog.indent(-1);
 
 
-        /*
-         * Step 3: Reroute routes with template conflicts (i.e. hop wires conflicts)
-         *  Routes are routed synchronously
-         */
-        long tStep3Begin = System.currentTimeMillis();
-        RouterLog.log("3: Rerouting conflicting routes.", RouterLog.Level.NORMAL);
-        RouterLog.indent();
+        if (useNegotiatedCongestion) {
+            /*
+             * Steps 3-4: Negotiate congestion between all routes, in place of the conflict and congestion patches
+             */
+            long tStep3Begin = System.currentTimeMillis();
+            RouterLog.log("3-4: Negotiating congestion.", RouterLog.Level.NORMAL);
+            RouterLog.indent();
 
-        int rerouteCount = 0;
-        for (RegisterConnection connection : routesMap.keySet()) {
-            RouteFootprint footprint = routesMap.get(connection);
-            Set<CustomRoute> badRoutes = new HashSet<>();
+            negotiateCongestion();
 
-            boolean isConflicted = false;
-            for (CustomRoute route : footprint.getRoutes()) {
-                for (WireJunction hopJunction : route.getTemplate().getTemplate()) {
-                    if (RouteForge.isOccupied(hopJunction.getNodeName())) {
-                        isConflicted = true;
-                        break;
-                    }
+            RouterLog.log("Congestion negotiated in " + (System.currentTimeMillis() - tStep3Begin) + " ms.",
+                    RouterLog.Level.NORMAL);
+            RouterLog.log("A total of " + failedRoutes.size() + " routes will be forcibly rerouted due to congestion.",
+                    RouterLog.Level.NORMAL);
+            RouterLog.indent(-1);
+        }
+        else {
+            /*
+             * Step 3: Reroute routes with template conflicts (i.e. hop wires conflicts)
+             *  Routes claim their hops in connection and route index order, then losing routes are rerouted in parallel
+             */
+            long tStep3Begin = System.currentTimeMillis();
+            RouterLog.log("3: Rerouting conflicting routes.", RouterLog.Level.NORMAL);
+            RouterLog.indent();
+
+            ArrayList<CustomRoute> badRoutes = new ArrayList<>();
+            for (RegisterConnection connection : connectionSet) {
+                RouteFootprint footprint = routesMap.get(connection);
+                if (footprint == null)
+                    continue;
+
+                ArrayList<CustomRoute> routes = new ArrayList<>(footprint.getRoutes());
+                routes.sort(Comparator.comparingInt(CustomRoute::getRouteIndex));
+                // Sources and sinks are locked to their registers since step 0, so only the hops in between are claimed
+                for (CustomRoute route : routes) {
+                    ArrayList<WireJunction> hops = route.getTemplate().getTemplate();
+                    if (!RouteForge.occupyAll(getNodeIds(hops.subList(1, hops.size() - 1))))
+                        badRoutes.add(route);
                 }
+            }
 
-                if (isConflicted) {
-                    badRoutes.add(route);
-                }
-                else {
-                    for (WireJunction hopJunction : route.getTemplate().getTemplate()) {
-                        RouteForge.occupy(hopJunction.getNodeName());
-                    }
+            int rerouteCount = badRoutes.size();
+            int rerouteRounds = 0;
+            while (!badRoutes.isEmpty()) {
+                // Reroutes of a round run against the occupancy at the start of the round, and only once all of
+                //   them are done are their hops claimed in order; routes losing a hop to an earlier one retry
+                // Segment sinks are locked up front, so no reroute can pass through the sink of another, whatever
+                //   the order its thread gets to them
+                for (CustomRoute badRoute : badRoutes)
+                    RouteForge.lock(badRoute.getTemplate().getTemplate(-3).getNodeId());
+
+                ArrayList<Future<CustomRoute>> rerouteResults = new ArrayList<>();
+                for (CustomRoute badRoute : badRoutes) {
+                    SignalRoutingJob job = new SignalRoutingJob(coreDesign, badRoute.getSrc(),
+                            (ExitWireJunction) badRoute.getTemplate().getTemplate(-3));
+                    rerouteResults.add(executor.submit(() -> {
+                        job.run();
+                        return job.getRoute();
+                    }));
                 }
-            }
 
-            rerouteCount += badRoutes.size();
-            for (CustomRoute badRoute : badRoutes) {
-                SignalRoutingJob job = new SignalRoutingJob(coreDesign, badRoute.getSrc(),
-                        (ExitWireJunction) badRoute.getTemplate().getTemplate(-3));
-                job.run();
+                ArrayList<CustomRoute> segments = new ArrayList<>();
+                for (Future<CustomRoute> rerouteResult : rerouteResults)
+                    segments.add(rerouteResult.get());
+
+                ArrayList<CustomRoute> retryRoutes = new ArrayList<>();
+                for (int i = 0; i < badRoutes.size(); i++) {
+                    CustomRoute badRoute = badRoutes.get(i);
+                    CustomRoute segment = segments.get(i);
+
+                    // Every hop after the source is claimed, i.e. the segment up to and including its sink, and the
+                    //   wire the sink drives into the route's last tile
+                    ArrayList<WireJunction> hops = new ArrayList<>(segment.getTemplate().getTemplate());
+                    hops.remove(0);
+                    hops.add(badRoute.getTemplate().getTemplate(-2));
+                    int[] nodeIds = getNodeIds(hops);
+
+                    int segmentSnkId = segment.getSnk().getNodeId();
+                    RouteForge.unlock(segmentSnkId);
+                    boolean isClaimed = RouteForge.occupyAll(nodeIds);
+
+                    // The first route of a round is always kept, as the serial reroute did, so every round progresses
+                    if (!isClaimed && i > 0) {
+                        RouteForge.lock(segmentSnkId);
+                        retryRoutes.add(badRoute);
+                        continue;
+                    }
+                    if (!isClaimed) {
+                        for (int nodeId : nodeIds)
+                            RouteForge.occupy(nodeId);
+                    }
 
-                badRoute.replaceRoute(job.getRoute().getSrc(), job.getRoute().getSnk(), job.getRoute());
+                    badRoute.replaceRoute(segment.getSrc(), segment.getSnk(), segment);
+                }
 
-                for (WireJunction hopJunction : badRoute.getTemplate().getTemplate())
-                    RouteForge.occupy(hopJunction.getNodeName());
+                badRoutes = retryRoutes;
+                rerouteRounds += 1;
             }
-        }
 
-        RouterLog.log(rerouteCount + " conflicted routes rerouted in " + (System.currentTimeMillis() - tStep3Begin) + " ms.",
-                RouterLog.Level.NORMAL);
-        RouterLog.indent(-1);
+            RouterLog.log(rerouteCount + " conflicted routes rerouted in " + rerouteRounds + " rounds in "
+                    + (System.currentTimeMillis() - tStep3Begin) + " ms.", RouterLog.Level.NORMAL);
+            RouterLog.indent(-1);
 
 
-        /*
-         * Step 4: Find and correct congested tiles
-         */
-        long tStep4Begin = System.currentTimeMillis();
-        RouterLog.log("4: Resolving conflicts in congested tiles.", RouterLog.Level.NORMAL);
-        RouterLog.indent();
-        HashMap<String, RoutingCalculator.TilePathUsageBundle> tileUsageMap = new HashMap<>();
-        HashMap<String, Set<Triple<RegisterConnection, CustomRoute, TilePath>>> congestedTileMap = new HashMap<>();
+            /*
+             * Step 4: Find and correct congested tiles
+             */
+            long tStep4Begin = System.currentTimeMillis();
+            RouterLog.log("4: Resolving conflicts in congested tiles.", RouterLog.Level.NORMAL);
+            RouterLog.indent();
+            HashMap<String, RoutingCalculator.TilePathUsageBundle> tileUsageMap = new HashMap<>();
+            HashMap<String, Set<Triple<RegisterConnection, CustomRoute, TilePath>>> congestedTileMap = new HashMap<>();
 
-        for (RegisterConnection connection : routesMap.keySet()) {
-            RouteFootprint footprint = routesMap.get(connection);
+            for (RegisterConnection connection : routesMap.keySet()) {
+                RouteFootprint footprint = routesMap.get(connection);
 
-            for (CustomRoute route : footprint.getRoutes()) {
-                for (TilePath path : route.getRoute()) {
-                    if (!tileUsageMap.containsKey(path.getTileName())) {
-                        tileUsageMap.put(path.getTileName(),
-                                new RoutingCalculator.TilePathUsageBundle(path.getTileName()));
-                    }
+                for (CustomRoute route : footprint.getRoutes()) {
+                    for (TilePath path : route.getRoute()) {
+                        if (!tileUsageMap.containsKey(path.getTileName())) {
+                            tileUsageMap.put(path.getTileName(),
+                                    new RoutingCalculator.TilePathUsageBundle(path.getTileName()));
+                        }
 
-                    tileUsageMap.get(path.getTileName()).addTilePath(connection, route, path);
+                        tileUsageMap.get(path.getTileName()).addTilePath(connection, route, path);
+                    }
                 }
             }
-        }
 
-        for (String tileName : tileUsageMap.keySet()) {
-            if (tileUsageMap.get(tileName).isConfliced())
-                congestedTileMap.put(tileName, tileUsageMap.get(tileName).getRouteSet());
-        }
+            for (String tileName : tileUsageMap.keySet()) {
+                if (tileUsageMap.get(tileName).isConfliced())
+                    congestedTileMap.put(tileName, tileUsageMap.get(tileName).getRouteSet());
+            }
 
-        RouterLog.log(congestedTileMap.size() + " congested tiles found.", RouterLog.Level.NORMAL);
+            RouterLog.log(congestedTileMap.size() + " congested tiles found.", RouterLog.Level.NORMAL);
 
-        Set<Future<Set<Pair<RegisterConnection, CustomRoute>>>> congestionJobResults = new HashSet<>();
-        for (String tileName : congestedTileMap.keySet()) {
-            TileCongestionJob job = new TileCongestionJob(coreDesign, congestedTileMap.get(tileName));
-            congestionJobResults.add(executor.submit(job));
-        }
+            Set<Future<Set<Pair<RegisterConnection, CustomRoute>>>> congestionJobResults = new HashSet<>();
+            for (String tileName : congestedTileMap.keySet()) {
+                TileCongestionJob job = new TileCongestionJob(coreDesign, congestedTileMap.get(tileName));
+                congestionJobResults.add(executor.submit(job));
+            }
 
-        for (Future<Set<Pair<RegisterConnection, CustomRoute>>> future : congestionJobResults) {
-            failedRoutes.addAll(future.get());
-        }
+            for (Future<Set<Pair<RegisterConnection, CustomRoute>>> future : congestionJobResults) {
+                failedRoutes.addAll(future.get());
+            }
 
-        RouterLog.log("All tile congestions resolved in " + (System.currentTimeMillis() - tStep4Begin) + " ms.",
-                RouterLog.Level.NORMAL);
-        RouterLog.log("A total of " + failedRoutes.size() + " routes will be forcibly rerouted due to congestion.",
-                RouterLog.Level.NORMAL);
-        RouterLog.indent(-1);
+            RouterLog.log("All tile congestions resolved in " + (System.currentTimeMillis() - tStep4Begin) + " ms.",
+                    RouterLog.Level.NORMAL);
+            RouterLog.log("A total of " + failedRoutes.size() + " routes will be forcibly rerouted due to congestion.",
+                    RouterLog.Level.NORMAL);
+            RouterLog.indent(-1);
+        }
 
 
         /*
@@ -403,31 +672,75 @@ public class DesignRouter {
                     }
                 }
             }
-
-            routesMap.get(connection).commit(coreDesign);
         }
 
-        RouterLog.log("All clean routes committed in " + (System.currentTimeMillis() - tStep5Begin) + " ms.",
-                RouterLog.Level.NORMAL);
+        // Nets are disjoint, so PIPs are resolved per connection on the pool; only adding them to nets is serial
+        ArrayList<RouteFootprint> footprints = new ArrayList<>(routesMap.values());
+        ArrayList<Future<HashMap<CustomRoute, ArrayList<PIP>>>> commitResults = new ArrayList<>();
+        for (RouteFootprint footprint : footprints)
+            commitResults.add(executor.submit(() -> footprint.resolvePIPs(coreDesign)));
+
+        int committedPIPCount = 0;
+        for (int i = 0; i < footprints.size(); i++)
+            committedPIPCount += footprints.get(i).commit(commitResults.get(i).get());
+
+        long tStep5 = System.currentTimeMillis() - tStep5Begin;
+        RouterLog.log("All clean routes committed in " + tStep5 + " ms (" + committedPIPCount + " PIPs, "
+                + (committedPIPCount * 1000L / Math.max(tStep5, 1)) + " PIPs/s).", RouterLog.Level.NORMAL);
         RouterLog.indent(-1);
 
 
         /*
          * Step 6: Reroute routes where congestions could not be resolved
-         *  Routing is done serially
+         *  Routes of a round are found in parallel against the occupancy left by the previous rounds; once all of
+         *  them are found, they are validated and committed in net order, and only routes that collide with an
+         *  earlier route of the same round are routed again
          */
         long tStep6Begin = System.currentTimeMillis();
         RouterLog.log("6: Rerouting conflicted routes.", RouterLog.Level.NORMAL);
         RouterLog.indent();
-        for (Pair<RegisterConnection, CustomRoute> failure : failedRoutes) {
-            SignalRoutingJob job = new SignalRoutingJob(coreDesign, failure.getRight().getSrc(),
-                    failure.getRight().getSnk());
-            job.run();
 
-            job.getRoute().commitToNet(coreDesign, signalNetMap.get(failure.getRight()));
+        ArrayList<CustomRoute> pendingRoutes = new ArrayList<>();
+        for (Pair<RegisterConnection, CustomRoute> failure : failedRoutes)
+            pendingRoutes.add(failure.getRight());
+        pendingRoutes.sort(Comparator.comparing(route -> signalNetMap.get(route).getName()));
+
+        int rerouteRounds = 0;
+        while (!pendingRoutes.isEmpty()) {
+            ArrayList<Future<CustomRoute>> rerouteResults = new ArrayList<>();
+            for (CustomRoute failedRoute : pendingRoutes) {
+                SignalRoutingJob job = new SignalRoutingJob(coreDesign, failedRoute.getSrc(), failedRoute.getSnk());
+                rerouteResults.add(executor.submit(() -> {
+                    job.run();
+                    return job.getRoute();
+                }));
+            }
+
+            // Nothing is claimed until every job of the round is done, as the jobs still read occupancy until then
+            ArrayList<CustomRoute> routes = new ArrayList<>();
+            for (Future<CustomRoute> rerouteResult : rerouteResults)
+                routes.add(rerouteResult.get());
+
+            ArrayList<CustomRoute> retryRoutes = new ArrayList<>();
+            for (int i = 0; i < pendingRoutes.size(); i++) {
+                CustomRoute failedRoute = pendingRoutes.get(i);
+                CustomRoute route = routes.get(i);
+
+                // The first route of a round is always committed, as the serial reroute did, so every round progresses
+                if (!RouteForge.occupyAll(getRouteNodeIds(route)) && i > 0) {
+                    retryRoutes.add(failedRoute);
+                    continue;
+                }
+
+                route.commitToNet(coreDesign, signalNetMap.get(failedRoute));
+            }
+
+            pendingRoutes = retryRoutes;
+            rerouteRounds += 1;
         }
-        RouterLog.log("All conflicting routes rerouted in " + (System.currentTimeMillis() - tStep6Begin) + " ms.",
-                RouterLog.Level.NORMAL);
+
+        RouterLog.log("All conflicting routes rerouted in " + rerouteRounds + " rounds in "
+                + (System.currentTimeMillis() - tStep6Begin) + " ms.", RouterLog.Level.NORMAL);
         RouterLog.indent(-1);
 
 
@@ -1,9 +1,11 @@
 package com.uwaterloo.watcag.router;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import com.uwaterloo.watcag.DesignFailureException;
-import com.uwaterloo.watcag.util.RouteUtil;
+import com.uwaterloo.watcag.router.browser.FabricBrowser;
+import com.uwaterloo.watcag.router.browser.FabricGraph;
 import com.uwaterloo.watcag.util.RouterLog;
 import com.xilinx.rapidwright.design.Design;
 import com.xilinx.rapidwright.design.Net;
@@ -17,58 +19,113 @@ public class RouteForge {
      * Collection of static functions which can route registers
      */
 
+    /*
+     * Lock and occupancy state of every node in the fabric graph, packed 2 bits per node
+     *   All updates are compare-and-set, so routing threads never block on each other
+     */
+    private static final int LOCK_BIT = 0x1;
+    private static final int OCCUPY_BIT = 0x2;
+    private static final int BITS_PER_NODE = 2;
+    private static final int NODES_PER_WORD = Long.SIZE / BITS_PER_NODE;
+
+    private static volatile AtomicLongArray nodeStates = new AtomicLongArray(0);
+
     public static void reset() {
-        nodeLock.clear();
-        globalNodeFootprint.clear();
+        nodeStates = new AtomicLongArray((FabricGraph.getNodeCount() + NODES_PER_WORD - 1) / NODES_PER_WORD);
     }
 
-    private static final Set<String> nodeLock = new HashSet<>();
+    private static long nodeMask(int nodeId, int bits) {
+        return ((long) bits) << ((nodeId % NODES_PER_WORD) * BITS_PER_NODE);
+    }
 
-    public static boolean lock(String nodeName) {
-        synchronized (nodeLock) {
-            if (nodeLock.contains(nodeName))
+    private static boolean testAny(int nodeId, int bits) {
+        if (nodeId < 0)
+            return false;
+        return (nodeStates.get(nodeId / NODES_PER_WORD) & nodeMask(nodeId, bits)) != 0;
+    }
+
+    /*
+     * Sets setBits of the node if none of the guardBits are set; returns false otherwise
+     */
+    private static boolean setIfClear(int nodeId, int guardBits, int setBits) {
+        if (nodeId < 0)
+            return true;
+
+        AtomicLongArray states = nodeStates;
+        int word = nodeId / NODES_PER_WORD;
+        long guard = nodeMask(nodeId, guardBits);
+        long set = nodeMask(nodeId, setBits);
+
+        while (true) {
+            long state = states.get(word);
+            if ((state & guard) != 0)
                 return false;
-            nodeLock.add(nodeName);
+            if (states.compareAndSet(word, state, state | set))
+                return true;
         }
-        return true;
     }
 
-    public static boolean isLocked(String nodeName) {
-        synchronized (nodeLock) {
-            synchronized (globalNodeFootprint) {
-                return nodeLock.contains(nodeName) || isOccupied(nodeName);
-            }
+    private static void clear(int nodeId, int bits) {
+        if (nodeId < 0)
+            return;
+
+        AtomicLongArray states = nodeStates;
+        int word = nodeId / NODES_PER_WORD;
+        long mask = nodeMask(nodeId, bits);
+
+        while (true) {
+            long state = states.get(word);
+            if ((state & mask) == 0 || states.compareAndSet(word, state, state & ~mask))
+                return;
         }
     }
 
-    public static void unlock(String nodeName) {
-        synchronized (nodeLock) {
-            nodeLock.remove(nodeName);
-        }
+    public static boolean lock(int nodeId) {
+        return setIfClear(nodeId, LOCK_BIT, LOCK_BIT);
+    }
+
+    /*
+     * Locked or occupied, checked with a single read
+     */
+    public static boolean isLocked(int nodeId) {
+        return testAny(nodeId, LOCK_BIT | OCCUPY_BIT);
+    }
+
+    public static void unlock(int nodeId) {
+        clear(nodeId, LOCK_BIT);
     }
 
-    // ArrayList of all used nodes
-    private static final Set<String> globalNodeFootprint = new HashSet<>();
+    public static boolean occupy(int nodeId) {
+        return setIfClear(nodeId, OCCUPY_BIT, OCCUPY_BIT);
+    }
 
-    public static boolean occupy(String nodeName) {
-        synchronized (globalNodeFootprint) {
-            if (globalNodeFootprint.contains(nodeName))
+    /*
+     * Claim-or-fail: claim every node, or none of them if any is already locked or occupied
+     */
+    public static boolean occupyAll(int[] nodeIds) {
+        for (int i = 0; i < nodeIds.length; i++) {
+            if (!claim(nodeIds[i])) {
+                for (int j = 0; j < i; j++)
+                    unOccupy(nodeIds[j]);
                 return false;
-            globalNodeFootprint.add(nodeName);
+            }
         }
         return true;
     }
 
-    public static boolean isOccupied(String nodeName) {
-        synchronized (globalNodeFootprint) {
-            return globalNodeFootprint.contains(nodeName);
-        }
+    public static boolean isOccupied(int nodeId) {
+        return testAny(nodeId, OCCUPY_BIT);
     }
 
-    public static void unOccupy(String nodeName) {
-        synchronized (globalNodeFootprint) {
-            globalNodeFootprint.remove(nodeName);
-        }
+    public static void unOccupy(int nodeId) {
+        clear(nodeId, OCCUPY_BIT);
+    }
+
+    /*
+     * Atomically occupy a node only if it is neither locked nor occupied
+     */
+    public static boolean claim(int nodeId) {
+        return setIfClear(nodeId, LOCK_BIT | OCCUPY_BIT, OCCUPY_BIT);
     }
 
     public static void sanitizeNets(Design d) {
@@ -98,19 +155,39 @@ public class RouteForge {
     }
 
 
-    public static void findAndRoute(Design d, Net n, String tileName, String startNodeName, String endNodeName) {
-        for (PIP pip : d.getDevice().getTile(tileName).getPIPs()) {
-            if (RouteUtil.getPIPNodeName(tileName, pip.getStartWireName()).equals(startNodeName)
-                    && (RouteUtil.getPIPNodeName(tileName, pip.getEndWireName())).equals(endNodeName)) {
-                RouterLog.log("Junction <" + startNodeName + "> ---> <" + endNodeName + ">", RouterLog.Level.INFO);
-                n.addPIP(pip);
+    /*
+     * Resolves the PIP between two nodes of a tile through the tile type's PIP index, and occupies both nodes
+     *   Nothing is logged or added to a net, so PIPs of different nets can be resolved concurrently
+     */
+    public static PIP findAndOccupy(Design d, String tileName, int startNodeId, int endNodeId) {
+        PIP pip = FabricBrowser.getPIP(d, tileName, startNodeId, endNodeId);
+        if (pip == null)
+            throw new DesignFailureException("Junction <" + FabricGraph.getNodeName(startNodeId) + "> ---> <"
+                    + FabricGraph.getNodeName(endNodeId) + "> failed.");
+
+        occupy(startNodeId);
+        occupy(endNodeId);
+        return pip;
+    }
 
-                occupy(startNodeName);
-                occupy(endNodeName);
-                return;
-            }
-        }
+    public static void logJunction(int startNodeId, int endNodeId) {
+        RouterLog.log("Junction <" + FabricGraph.getNodeName(startNodeId) + "> ---> <"
+                + FabricGraph.getNodeName(endNodeId) + ">", RouterLog.Level.INFO);
+    }
+
+    public static void findAndRoute(Design d, Net n, String tileName, int startNodeId, int endNodeId) {
+        PIP pip = findAndOccupy(d, tileName, startNodeId, endNodeId);
+        logJunction(startNodeId, endNodeId);
+        n.addPIP(pip);
+    }
 
-        throw new DesignFailureException("Junction <" + startNodeName + "> ---> <" + endNodeName + "> failed.");
+    /*
+     * Adds PIPs to a net in one update, instead of one addPIP() per PIP
+     */
+    public static void addPIPs(Net n, List<PIP> pips) {
+        List<PIP> netPIPs = new ArrayList<>(n.getPIPs().size() + pips.size());
+        netPIPs.addAll(n.getPIPs());
+        netPIPs.addAll(pips);
+        n.setPIPs(netPIPs);
     }
 }
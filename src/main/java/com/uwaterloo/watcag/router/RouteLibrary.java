@@ -0,0 +1,360 @@
+package com.uwaterloo.watcag.router;
+
+import com.uwaterloo.watcag.common.RegisterConnection;
+import com.uwaterloo.watcag.config.ResourcesManager;
+import com.uwaterloo.watcag.router.browser.FabricBrowser;
+import com.uwaterloo.watcag.router.browser.FabricGraph;
+import com.uwaterloo.watcag.router.elements.*;
+import com.uwaterloo.watcag.util.RouterLog;
+import com.xilinx.rapidwright.design.Design;
+import com.xilinx.rapidwright.device.Tile;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class RouteLibrary {
+
+    /*
+     * On-disk library of routed buses, one file per Xilinx part, reused across designs and runs
+     *   Entries are keyed by the congruency signature of the connection, and store every junction relative to the
+     *   source INT tile of bit 0, along with its tile type, so that a route is translation invariant
+     *   An entry is only instantiated if every tile it passes through has the recorded tile type, every PIP exists
+     *   and no node other than the sources and sinks is locked; otherwise the bus is routed as usual
+     */
+
+    private static final int MAGIC = 0x52524C42;
+    private static final int VERSION = 1;
+
+    private static final String FILE_EXTENSION = ".routes";
+
+    // Routes of one shape kept for different surroundings, e.g. tile type columns or locked register PIPs
+    private static final int MAX_ENTRIES_PER_SIGNATURE = 4;
+
+    private static class BitRoute {
+        // Template junctions, inclusive of src and snk
+        private int[] junctionDX;
+        private int[] junctionDY;
+        private String[] junctionTileTypes;
+        private String[] junctionWires;
+
+        // Wire names of each tile path, on the tile of its entering junction
+        private String[][] pathWires;
+        private int[] pathCosts;
+    }
+
+    private static final Map<String, List<BitRoute[]>> entries = new ConcurrentHashMap<>();
+
+    private static String loadedPartName = null;
+    private static boolean isModified = false;
+
+    private static String getLibraryFileName(Design d) {
+        return ResourcesManager.ROUTE_LIBRARY_DIR + d.getPartName() + FILE_EXTENSION;
+    }
+
+    /*
+     * Loads the part's library file, unless it is already loaded
+     */
+    public static void open(Design d) {
+        if (d.getPartName().equals(loadedPartName))
+            return;
+
+        entries.clear();
+        loadedPartName = d.getPartName();
+        isModified = false;
+
+        File libraryFile = new File(getLibraryFileName(d));
+        if (!libraryFile.isFile())
+            return;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(libraryFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !readString(in).equals(d.getDevice().getName())) {
+                RouterLog.log("Route library <" + libraryFile.getPath() + "> is stale; ignoring.",
+                        RouterLog.Level.INFO);
+                return;
+            }
+
+            int entryCount = in.readInt();
+            for (int e = 0; e < entryCount; e++) {
+                String signature = readString(in);
+
+                BitRoute[] bitRoutes = new BitRoute[in.readInt()];
+                for (int bit = 0; bit < bitRoutes.length; bit++)
+                    bitRoutes[bit] = readBitRoute(in);
+
+                entries.computeIfAbsent(signature, k -> new ArrayList<>()).add(bitRoutes);
+            }
+
+        } catch (IOException e) {
+            RouterLog.log("Route library <" + libraryFile.getPath() + "> could not be read; ignoring.",
+                    RouterLog.Level.WARNING);
+            entries.clear();
+            return;
+        }
+
+        RouterLog.log("Loaded route library <" + libraryFile.getPath() + "> (" + entries.size() + " signatures).",
+                RouterLog.Level.INFO);
+    }
+
+    /*
+     * Writes the library back to the part's file, if any routes were added since it was opened
+     *   Failing to write the library is not fatal; the routes are simply searched again next run
+     */
+    public static void save(Design d) {
+        if (!isModified)
+            return;
+
+        File libraryFile = new File(getLibraryFileName(d));
+        File tempFile = new File(libraryFile.getPath() + ".tmp");
+
+        try {
+            Files.createDirectories(Paths.get(ResourcesManager.ROUTE_LIBRARY_DIR));
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writeString(out, d.getDevice().getName());
+
+                int entryCount = 0;
+                for (List<BitRoute[]> signatureEntries : entries.values())
+                    entryCount += signatureEntries.size();
+                out.writeInt(entryCount);
+
+                for (Map.Entry<String, List<BitRoute[]>> entry : entries.entrySet()) {
+                    for (BitRoute[] bitRoutes : entry.getValue()) {
+                        writeString(out, entry.getKey());
+                        out.writeInt(bitRoutes.length);
+                        for (BitRoute bitRoute : bitRoutes)
+                            writeBitRoute(out, bitRoute);
+                    }
+                }
+            }
+
+            Files.move(tempFile.toPath(), libraryFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        } catch (IOException e) {
+            RouterLog.log("Route library <" + libraryFile.getPath() + "> could not be written.",
+                    RouterLog.Level.WARNING);
+            tempFile.delete();
+            return;
+        }
+
+        isModified = false;
+        RouterLog.log("Saved route library <" + libraryFile.getPath() + ">.", RouterLog.Level.INFO);
+    }
+
+    /*
+     * Records the routes of a bus, in bit order, as routed for the connection
+     */
+    public static void add(Design d, RegisterConnection connection, List<CustomRoute> routes) {
+        String signature = connection.getCongruencySignature(d);
+        if (signature == null)
+            return;
+
+        Tile refTile = connection.getSrcIntTile(d);
+
+        BitRoute[] bitRoutes = new BitRoute[routes.size()];
+        for (int bit = 0; bit < routes.size(); bit++)
+            bitRoutes[bit] = encode(d, refTile, routes.get(bit));
+
+        List<BitRoute[]> signatureEntries = entries.computeIfAbsent(signature, k -> new ArrayList<>());
+        synchronized (signatureEntries) {
+            // Older entries may still fit other locations, so only the oldest is dropped once the limit is reached
+            if (signatureEntries.size() >= MAX_ENTRIES_PER_SIGNATURE)
+                signatureEntries.remove(0);
+            signatureEntries.add(bitRoutes);
+        }
+        isModified = true;
+    }
+
+    /*
+     * Routes of the connection's bus in bit order, cloned from the library, or null if no entry fits the location
+     */
+    public static ArrayList<CustomRoute> lookUp(Design d, RegisterConnection connection) {
+        String signature = connection.getCongruencySignature(d);
+        if (signature == null || !entries.containsKey(signature))
+            return null;
+
+        Tile refTile = connection.getSrcIntTile(d);
+        List<BitRoute[]> signatureEntries = entries.get(signature);
+        synchronized (signatureEntries) {
+            for (BitRoute[] entry : signatureEntries) {
+                ArrayList<CustomRoute> routes = instantiate(d, refTile, entry);
+                if (routes != null)
+                    return routes;
+            }
+        }
+        return null;
+    }
+
+    private static BitRoute encode(Design d, Tile refTile, CustomRoute route) {
+        BitRoute bitRoute = new BitRoute();
+
+        ArrayList<WireJunction> template = route.getTemplate().getTemplate();
+        bitRoute.junctionDX = new int[template.size()];
+        bitRoute.junctionDY = new int[template.size()];
+        bitRoute.junctionTileTypes = new String[template.size()];
+        bitRoute.junctionWires = new String[template.size()];
+        for (int j = 0; j < template.size(); j++) {
+            Tile tile = d.getDevice().getTile(template.get(j).getTileName());
+            bitRoute.junctionDX[j] = tile.getTileXCoordinate() - refTile.getTileXCoordinate();
+            bitRoute.junctionDY[j] = tile.getTileYCoordinate() - refTile.getTileYCoordinate();
+            bitRoute.junctionTileTypes[j] = tile.getTileTypeEnum().name();
+            bitRoute.junctionWires[j] = template.get(j).getWireName();
+        }
+
+        ArrayList<TilePath> paths = route.getRoute();
+        bitRoute.pathWires = new String[paths.size()][];
+        bitRoute.pathCosts = new int[paths.size()];
+        for (int p = 0; p < paths.size(); p++) {
+            int[] nodePath = paths.get(p).getNodePath();
+            bitRoute.pathWires[p] = new String[nodePath.length];
+            for (int n = 0; n < nodePath.length; n++)
+                bitRoute.pathWires[p][n] = FabricGraph.getWireName(nodePath[n]);
+            bitRoute.pathCosts[p] = paths.get(p).getCost();
+        }
+
+        return bitRoute;
+    }
+
+    private static ArrayList<CustomRoute> instantiate(Design d, Tile refTile, BitRoute[] bitRoutes) {
+        ArrayList<CustomRoute> routes = new ArrayList<>();
+        for (int bit = 0; bit < bitRoutes.length; bit++) {
+            CustomRoute route = instantiate(d, refTile, bitRoutes[bit]);
+            if (route == null)
+                return null;
+
+            route.setRouteIndex(bit);
+            routes.add(route);
+        }
+        return routes;
+    }
+
+    private static CustomRoute instantiate(Design d, Tile refTile, BitRoute bitRoute) {
+        int junctionCount = bitRoute.junctionWires.length;
+
+        ArrayList<WireJunction> junctions = new ArrayList<>();
+        for (int j = 0; j < junctionCount; j++) {
+            Tile tile = refTile.getTileXYNeighbor(bitRoute.junctionDX[j], bitRoute.junctionDY[j]);
+            if (tile == null || !tile.getTileTypeEnum().name().equals(bitRoute.junctionTileTypes[j]))
+                return null;
+
+            String tileName = tile.getName();
+            String wireName = bitRoute.junctionWires[j];
+            if (FabricGraph.getNodeId(tileName, wireName) == FabricGraph.NULL_NODE)
+                return null;
+
+            // Template layout is [src, exit, enter, ..., exit, enter, snk]
+            if (j == 0)
+                junctions.add(EnterWireJunction.newSrcJunction(tileName, wireName));
+            else if (j == junctionCount - 1)
+                junctions.add(ExitWireJunction.newSnkJunction(tileName, wireName));
+            else if (j % 2 == 1)
+                junctions.add(new ExitWireJunction(d, tileName, wireName));
+            else
+                junctions.add(new EnterWireJunction(d, tileName, wireName));
+        }
+
+        RouteTemplate template = new RouteTemplate(d, (EnterWireJunction) junctions.get(0),
+                (ExitWireJunction) junctions.get(junctionCount - 1));
+        for (int j = 1; j < junctionCount - 1; j++)
+            template.getTemplate().add(j, junctions.get(j));
+
+        ArrayList<TilePath> paths = new ArrayList<>();
+        for (int p = 0; p < bitRoute.pathWires.length; p++) {
+            EnterWireJunction enter = (EnterWireJunction) junctions.get(2 * p);
+            ExitWireJunction exit = (ExitWireJunction) junctions.get(2 * p + 1);
+            String tileName = enter.getTileName();
+
+            String[] wires = bitRoute.pathWires[p];
+            int[] nodePath = new int[wires.length];
+            for (int n = 0; n < wires.length; n++) {
+                nodePath[n] = FabricGraph.getNodeId(tileName, wires[n]);
+                if (nodePath[n] == FabricGraph.NULL_NODE)
+                    return null;
+
+                // Sources and sinks are locked by their registers; any other locked node belongs to another register
+                boolean isSrc = p == 0 && n == 0;
+                boolean isSnk = p == bitRoute.pathWires.length - 1 && n == wires.length - 1;
+                if (!isSrc && !isSnk && RouteForge.isLocked(nodePath[n]))
+                    return null;
+
+                if (n > 0 && FabricBrowser.getPIP(d, tileName, nodePath[n - 1], nodePath[n]) == null)
+                    return null;
+            }
+
+            paths.add(new TilePath(enter, exit, nodePath, bitRoute.pathCosts[p]));
+        }
+
+        CustomRoute route = new CustomRoute(template);
+        route.setRoute(paths);
+        return route;
+    }
+
+    private static BitRoute readBitRoute(DataInputStream in) throws IOException {
+        BitRoute bitRoute = new BitRoute();
+
+        int junctionCount = in.readInt();
+        bitRoute.junctionDX = new int[junctionCount];
+        bitRoute.junctionDY = new int[junctionCount];
+        bitRoute.junctionTileTypes = new String[junctionCount];
+        bitRoute.junctionWires = new String[junctionCount];
+        for (int j = 0; j < junctionCount; j++) {
+            bitRoute.junctionDX[j] = in.readInt();
+            bitRoute.junctionDY[j] = in.readInt();
+            bitRoute.junctionTileTypes[j] = readString(in);
+            bitRoute.junctionWires[j] = readString(in);
+        }
+
+        int pathCount = in.readInt();
+        bitRoute.pathWires = new String[pathCount][];
+        bitRoute.pathCosts = new int[pathCount];
+        for (int p = 0; p < pathCount; p++) {
+            bitRoute.pathCosts[p] = in.readInt();
+            bitRoute.pathWires[p] = new String[in.readInt()];
+            for (int n = 0; n < bitRoute.pathWires[p].length; n++)
+                bitRoute.pathWires[p][n] = readString(in);
+        }
+
+        return bitRoute;
+    }
+
+    private static void writeBitRoute(DataOutputStream out, BitRoute bitRoute) throws IOException {
+        out.writeInt(bitRoute.junctionWires.length);
+        for (int j = 0; j < bitRoute.junctionWires.length; j++) {
+            out.writeInt(bitRoute.junctionDX[j]);
+            out.writeInt(bitRoute.junctionDY[j]);
+            writeString(out, bitRoute.junctionTileTypes[j]);
+            writeString(out, bitRoute.junctionWires[j]);
+        }
+
+        out.writeInt(bitRoute.pathWires.length);
+        for (int p = 0; p < bitRoute.pathWires.length; p++) {
+            out.writeInt(bitRoute.pathCosts[p]);
+            out.writeInt(bitRoute.pathWires[p].length);
+            for (String wire : bitRoute.pathWires[p])
+                writeString(out, wire);
+        }
+    }
+
+    /*
+     * Signatures of wide buses can exceed the 64K limit of writeUTF(), so strings are length-prefixed with an int
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -23,7 +23,7 @@ public class RoutingCalculator {
 
         private String tileName;
         private Set<Triple<RegisterConnection, CustomRoute, TilePath>> routeSet;
-        private Set<String> nodeUsage;
+        private Set<Integer> nodeUsage;
 
         public TilePathUsageBundle(String tileName) {
             this.tileName = tileName;
@@ -42,13 +42,11 @@ public class RoutingCalculator {
         public void addTilePath(RegisterConnection connection, CustomRoute route, TilePath path) {
             routeSet.add(new ImmutableTriple<>(connection, route, path));
 
-            for (String nodeName : path.getNodePath()) {
-                if (nodeUsage.contains(nodeName)) {
+            for (int nodeId : path.getNodePath()) {
+                // Keep adding after a conflict is found, so later paths are checked against the full usage
+                if (!nodeUsage.add(nodeId))
                     isConfliced = true;
-                    break;
-                }
             }
-            nodeUsage.addAll(path.getNodePath());
         }
 
     }
@@ -61,14 +59,31 @@ public class RoutingCalculator {
         }
     }
 
+    /*
+     * A*-style ordering: cost so far plus an admissible estimate of the remaining cost to the sink tile
+     *   Ties are broken by the fewest hops left, as long hops are free and would otherwise tie very often
+     */
+    public static class JunctionsTracerHeuristicComparator implements Comparator<JunctionsTracer> {
+
+        @Override
+        public int compare(JunctionsTracer o1, JunctionsTracer o2) {
+            int diff = (o1.getEstimatedCost() + o1.getRemainingCost()) - (o2.getEstimatedCost() + o2.getRemainingCost());
+            if (diff != 0)
+                return diff;
+            return o1.getRemainingHops() - o2.getRemainingHops();
+        }
+    }
+
     public static Set<TilePath> locateTilePathCollisions(TilePath candidatePath, Set<TilePath> paths) {
         Set<TilePath> results = new HashSet<>();
 
-        Set<String> nodes = new HashSet<>(candidatePath.getNodePath());
+        Set<Integer> nodes = new HashSet<>();
+        for (int nodeId : candidatePath.getNodePath())
+            nodes.add(nodeId);
 
         for (TilePath path : paths) {
-            for (String nodeName : path.getNodePath()) {
-                if (nodes.contains(nodeName)) {
+            for (int nodeId : path.getNodePath()) {
+                if (nodes.contains(nodeId)) {
                     results.add(path);
                     break;
                 }
@@ -78,71 +93,35 @@ public class RoutingCalculator {
         return results;
     }
 
-    private static ArrayList<TilePath> deriveValidTilePathsRecurse(int depth, ArrayList<TilePath> validPathsState,
-                                                            HashSet<String> tilePathFootprint,
-                                                            ArrayList<HashSet<TilePath>> allPaths) {
-        if (depth == allPaths.size())
-            return validPathsState;
-
-        HashSet<TilePath> paths = allPaths.get(depth);
-        if (paths == null || paths.isEmpty())
-            return null;
-
-        for (TilePath candidate : paths) {
-            boolean isValid = true;
-            for (String nodeName : candidate.getNodePath()) {
-                if (tilePathFootprint.contains(nodeName)) {
-                    isValid = false;
-                    break;
-                }
-            }
-
-            if (!isValid)
-                continue;
-
-            HashSet<String> nextDepthTilePathFootprint = new HashSet<>(tilePathFootprint);
-            nextDepthTilePathFootprint.addAll(candidate.getNodePath());
-
-            validPathsState.set(depth, candidate);
-
-            ArrayList<TilePath> results = deriveValidTilePathsRecurse(depth + 1, validPathsState,
-                    nextDepthTilePathFootprint, allPaths);
-            if (results != null)
-                return results;
-        }
-
-        return null;
-    }
-
     public static ArrayList<TilePath> deriveValidTilePaths(ArrayList<HashSet<TilePath>> allPaths) {
-        ArrayList<HashSet<String>> exclusives = new ArrayList<>();
+        ArrayList<HashSet<Integer>> exclusives = new ArrayList<>();
 
         int bitWidth = allPaths.size();
 
         for (int i = 0; i < bitWidth; i++) {
             exclusives.add(new HashSet<>());
 
-            HashMap<String, Integer> usageCountMap = new HashMap<>();
+            HashMap<Integer, Integer> usageCountMap = new HashMap<>();
             HashSet<TilePath> pathChoices = allPaths.get(i);
 
             for (TilePath pathChoice : pathChoices) {
-                for (int j = 0; j < pathChoice.getNodePath().size(); j++) {
-                    if (!usageCountMap.containsKey(pathChoice.getNodeName(j)))
-                        usageCountMap.put(pathChoice.getNodeName(j), 1);
+                for (int nodeId : pathChoice.getNodePath()) {
+                    if (!usageCountMap.containsKey(nodeId))
+                        usageCountMap.put(nodeId, 1);
                     else
-                        usageCountMap.put(pathChoice.getNodeName(j), usageCountMap.get(pathChoice.getNodeName(j)) + 1);
+                        usageCountMap.put(nodeId, usageCountMap.get(nodeId) + 1);
                 }
             }
 
-            for (String nodeName : usageCountMap.keySet()) {
-                if (usageCountMap.get(nodeName) == pathChoices.size())
-                    exclusives.get(i).add(nodeName);
+            for (int nodeId : usageCountMap.keySet()) {
+                if (usageCountMap.get(nodeId) == pathChoices.size())
+                    exclusives.get(i).add(nodeId);
             }
         }
 
-        HashSet<String> allExclusives = new HashSet<>();
+        HashSet<Integer> allExclusives = new HashSet<>();
         for (int i = 0; i < bitWidth; i++) {
-            for (String exclusiveNode : exclusives.get(i)) {
+            for (int exclusiveNode : exclusives.get(i)) {
                 if (allExclusives.contains(exclusiveNode))
                     return null;
                 else
@@ -150,10 +129,7 @@ public class RoutingCalculator {
             }
         }
 
-        ArrayList<TilePath> results = new ArrayList<>();
-        for (int i = 0; i < bitWidth; i++)
-            results.add(null);
-        return deriveValidTilePathsRecurse(0, results, new HashSet<>(), allPaths);
+        return TilePathAssignmentSolver.solve(allPaths);
     }
 
     public static ArrayList<TilePath> deriveBestTilePathConfiguration(ArrayList<ArrayList<TilePath>> allPaths) {
@@ -178,53 +154,36 @@ public class RoutingCalculator {
                 threshMin = min;
         }
 
-        ArrayList<HashSet<TilePath>> candidatePool = new ArrayList<>();
+        // Solver keeps its paths across thresholds, and each threshold only searches the choices using its new paths
+        TilePathAssignmentSolver solver = new TilePathAssignmentSolver(bitWidth);
         for (int i = 0; i < bitWidth; i++) {
-            candidatePool.add(new HashSet<>());
+            ArrayList<TilePath> candidates = new ArrayList<>();
             for (TilePath path : allPaths.get(i)) {
                 if (path.getCost() < threshMin)
-                    candidatePool.get(i).add(path);
+                    candidates.add(path);
             }
+            solver.admit(i, candidates);
         }
 
         for (int threshold = threshMin; threshold <= threshMax; threshold++) {
-            ArrayList<HashSet<TilePath>> newCandidates = new ArrayList<>();
-            for (int i = 0; i < bitWidth; i++)
-                newCandidates.add(new HashSet<>());
-
             int additionsToCandidatePool = 0;
             for (int i = 0; i < bitWidth; i++) {
-                ArrayList<TilePath> candidates = allPaths.get(i);
-                for (TilePath candidate : candidates) {
-                    if (candidate.getCost() == threshold) {
-                        newCandidates.get(i).add(candidate);
-                        additionsToCandidatePool += 1;
-                    }
+                ArrayList<TilePath> newCandidates = new ArrayList<>();
+                for (TilePath candidate : allPaths.get(i)) {
+                    if (candidate.getCost() == threshold)
+                        newCandidates.add(candidate);
                 }
-                candidatePool.get(i).addAll(newCandidates.get(i));
+                solver.admit(i, newCandidates);
+                additionsToCandidatePool += newCandidates.size();
             }
 
             // If nothing new was added to the candidate pool this round, simply move on to the next threshold
             if (additionsToCandidatePool == 0)
                 continue;
 
-            for (int i = 0; i < bitWidth; i++) {
-                if (newCandidates.get(i).isEmpty())
-                    continue;
-
-                ArrayList<HashSet<TilePath>> candidates = new ArrayList<>(candidatePool);
-                candidates.set(i, newCandidates.get(i));
-
-                ArrayList<TilePath> results = new ArrayList<>();
-                for (int j = 0; j < bitWidth; j++)
-                    results.add(null);
-
-                results = deriveValidTilePathsRecurse(0, results, new HashSet<>(), candidates);
-
-                if (results != null) {
-                    return new ArrayList<>(results);
-                }
-            }
+            ArrayList<TilePath> results = solver.solveAdmitted();
+            if (results != null)
+                return results;
         }
 
         return null;
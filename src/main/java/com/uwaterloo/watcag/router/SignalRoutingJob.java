@@ -41,12 +41,22 @@ public class SignalRoutingJob {
         return route;
     }
 
+    /*
+     * Shortest tile path, or the cheapest one under the node costs while congestion is being negotiated
+     */
+    private TilePath findTilePath(int maxDepth, EnterWireJunction entrance, ExitWireJunction exit) {
+        if (!CongestionNegotiator.isActive())
+            return FabricBrowser.findClosestTilePath(coreDesign, maxDepth, entrance, exit, new HashSet<>());
+        return CongestionNegotiator.selectCheapestTilePath(
+                FabricBrowser.findTilePaths(coreDesign, maxDepth, entrance, exit));
+    }
+
     public void run() throws Exception {
 
-        RouteForge.lock(srcJunction.getNodeName());
-        RouteForge.lock(snkJunction.getNodeName());
+        RouteForge.lock(srcJunction.getNodeId());
+        RouteForge.lock(snkJunction.getNodeId());
 
-        Set<String> banList = new HashSet<>();
+        Set<Integer> banList = new HashSet<>();
         while (true) {
             TemplateSearchJob job = new TemplateSearchJob(coreDesign, srcJunction, snkJunction);
             job.setBatchSize(1);
@@ -59,13 +69,13 @@ public class SignalRoutingJob {
 
             boolean pathFailed = false;
             for (int i = 0; i < template.getTemplate().size() - 2; i += 2) {
-                TilePath path = FabricBrowser.findClosestTilePath(coreDesign,
+                TilePath path = findTilePath(TILE_TRAVERSAL_MAX_DEPTH,
                         (EnterWireJunction) template.getTemplate(i),
-                        (ExitWireJunction) template.getTemplate(i + 1), new HashSet<>());
+                        (ExitWireJunction) template.getTemplate(i + 1));
 
                 if (path == null) {
                     pathFailed = true;
-                    banList.add(template.getTemplate(i).getNodeName());
+                    banList.add(template.getTemplate(i).getNodeId());
                     break;
                 }
 
@@ -75,11 +85,11 @@ public class SignalRoutingJob {
             if (pathFailed)
                 continue;
 
-            TilePath sinkPath = FabricBrowser.findClosestTilePath(coreDesign, TILE_TRAVERSAL_MAX_DEPTH,
-                    (EnterWireJunction) template.getTemplate(-2), snkJunction, new HashSet<>());
+            TilePath sinkPath = findTilePath(TILE_TRAVERSAL_MAX_DEPTH,
+                    (EnterWireJunction) template.getTemplate(-2), snkJunction);
 
             if (sinkPath == null) {
-                banList.add(template.getTemplate(-2).getNodeName());
+                banList.add(template.getTemplate(-2).getNodeId());
                 continue;
             }
 
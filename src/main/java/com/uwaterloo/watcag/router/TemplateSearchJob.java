@@ -12,6 +12,8 @@ import com.xilinx.rapidwright.design.Design;
 import com.xilinx.rapidwright.device.Tile;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.PriorityQueue;
 import java.util.Set;
@@ -26,6 +28,30 @@ public class TemplateSearchJob {
     private static final int V_LONG_LINE_THRESHOLD = 12;
     private static final int H_LONG_LINE_THRESHOLD = 6;
 
+    // Order the search queue by cost so far only (legacy), or by cost so far plus remaining distance to the sink
+    private static boolean useDistanceHeuristic = true;
+    // Search from both the source and the sink lead-ins at once, meeting in the middle
+    private static boolean useBidirectionalSearch = false;
+
+    public static class BackwardSearch {
+        /*
+         * Search state kept from the sink side in bidirectional mode, so that batched searches can be resumed
+         *   Each lead-in grows its own backward tree, so that a node reached from a used lead-in can still be
+         *   reached from the others: backward tracers are keyed by node ID, then by their lead-in's node ID
+         */
+        private PriorityQueue<JunctionsTracer> searchQueue;
+        private HashMap<Integer, HashMap<Integer, JunctionsTracer>> backwardTracers;
+        private HashMap<Integer, JunctionsTracer> forwardTracers;
+        private boolean isSeeded;
+
+        public BackwardSearch() {
+            searchQueue = newSearchQueue();
+            backwardTracers = new HashMap<>();
+            forwardTracers = new HashMap<>();
+            isSeeded = false;
+        }
+    }
+
     private long tBegin;
     private long tEnd;
 
@@ -35,11 +61,15 @@ public class TemplateSearchJob {
     private ExitWireJunction snk;
 
     private int batchSize;
-    private Set<String> banList;
+    private Set<Integer> banList;
 
     private PriorityQueue<JunctionsTracer> searchQueue;
-    private Set<String> searchFootprint;
+    private Set<Integer> searchFootprint;
     private Set<EnterWireJunction> leadIns;
+    // Lead-ins not yet used by a template, by node ID, for the bidirectional search
+    private HashMap<Integer, EnterWireJunction> availableLeadIns;
+
+    private BackwardSearch backwardSearch;
 
     private ArrayList<RouteTemplate> results;
 
@@ -54,12 +84,42 @@ public class TemplateSearchJob {
         batchSize = 1;
         banList = new HashSet<>();
 
-        searchQueue = new PriorityQueue<>(new RoutingCalculator.JunctionsTracerCostComparator());
+        searchQueue = newSearchQueue();
         searchFootprint = new HashSet<>();
+        backwardSearch = new BackwardSearch();
 
         results = new ArrayList<>();
     }
 
+    public static void setDistanceHeuristic(boolean useDistanceHeuristic) {
+        TemplateSearchJob.useDistanceHeuristic = useDistanceHeuristic;
+    }
+
+    public static boolean isDistanceHeuristic() {
+        return useDistanceHeuristic;
+    }
+
+    public static void setBidirectionalSearch(boolean useBidirectionalSearch) {
+        TemplateSearchJob.useBidirectionalSearch = useBidirectionalSearch;
+    }
+
+    public static boolean isBidirectionalSearch() {
+        return useBidirectionalSearch;
+    }
+
+    /*
+     * Extra cost of taking a hop while congestion is being negotiated, zero otherwise
+     */
+    private static int getCongestionCost(ExitWireJunction exit, EnterWireJunction wireDest) {
+        return CongestionNegotiator.getNodeCost(exit.getNodeId()) + CongestionNegotiator.getNodeCost(wireDest.getNodeId());
+    }
+
+    public static PriorityQueue<JunctionsTracer> newSearchQueue() {
+        if (useDistanceHeuristic)
+            return new PriorityQueue<>(new RoutingCalculator.JunctionsTracerHeuristicComparator());
+        return new PriorityQueue<>(new RoutingCalculator.JunctionsTracerCostComparator());
+    }
+
     public void beginTiming() {
         tBegin = System.currentTimeMillis();
     }
@@ -88,11 +148,11 @@ public class TemplateSearchJob {
         this.batchSize = batchSize;
     }
 
-    public Set<String> getBanList() {
+    public Set<Integer> getBanList() {
         return banList;
     }
 
-    public void setBanList(Set<String> banList) {
+    public void setBanList(Set<Integer> banList) {
         this.banList = banList;
     }
 
@@ -104,14 +164,22 @@ public class TemplateSearchJob {
         this.searchQueue = searchQueue;
     }
 
-    public Set<String> getSearchFootprint() {
+    public Set<Integer> getSearchFootprint() {
         return searchFootprint;
     }
 
-    public void setSearchFootprint(Set<String> searchFootprint) {
+    public void setSearchFootprint(Set<Integer> searchFootprint) {
         this.searchFootprint = searchFootprint;
     }
 
+    public BackwardSearch getBackwardSearch() {
+        return backwardSearch;
+    }
+
+    public void setBackwardSearch(BackwardSearch backwardSearch) {
+        this.backwardSearch = backwardSearch;
+    }
+
     public Set<EnterWireJunction> getLeadIns() {
         return leadIns;
     }
@@ -126,6 +194,11 @@ public class TemplateSearchJob {
 
     public void run() {
 
+        if (useBidirectionalSearch) {
+            runBidirectional();
+            return;
+        }
+
         beginTiming();
 
         Tile srcIntTile = coreDesign.getDevice().getTile(src.getTileName());
@@ -139,14 +212,15 @@ public class TemplateSearchJob {
 
         if (searchQueue.isEmpty()) {
 
-            JunctionsTracer srcTracer = JunctionsTracer.newHeadTracer(src);
+            JunctionsTracer srcTracer = JunctionsTracer.newHeadTracer(src, snkTileX, snkTileY);
             for (ExitWireJunction exit : FabricBrowser.findReachableExits(coreDesign, src)) {
                 EnterWireJunction wireDest = exit.getDestJunction(coreDesign);
-                if (RouteForge.isLocked(wireDest.getNodeName()) || RouteForge.isLocked(exit.getNodeName()))
+                if (RouteForge.isLocked(wireDest.getNodeId()) || RouteForge.isLocked(exit.getNodeId()))
                     continue;
 
-                searchFootprint.add(wireDest.getNodeName());
-                searchQueue.add(new JunctionsTracer(wireDest, srcTracer, exit.getTilePathCost()));
+                searchFootprint.add(wireDest.getNodeId());
+                searchQueue.add(new JunctionsTracer(wireDest, srcTracer,
+                        exit.getTilePathCost() + getCongestionCost(exit, wireDest)));
             }
         }
 
@@ -181,7 +255,7 @@ public class TemplateSearchJob {
                         foundTemplate = true;
                         validLeadIn = leadIn;
 
-                        searchFootprint.add(validLeadIn.getNodeName());
+                        searchFootprint.add(validLeadIn.getNodeId());
                         break;
                     }
                 }
@@ -194,60 +268,190 @@ public class TemplateSearchJob {
                 continue;
             }
 
-            ArrayList<WireDirection> primaryDirs = RouteUtil.primaryDirections(distX, distY);
-            Set<ExitWireJunction> fanOut = FabricBrowser.getEntranceFanOut(coreDesign, travJunction);
+            expandForward(trav, distX, distY);
+        }
+
+        finishTiming();
+    }
+
+    /*
+     * Queues the hops leaving a forward tracer that head towards the sink, and returns the tracers queued
+     *   Far from the sink, a long line only carries on as a long line in the same direction
+     */
+    private ArrayList<JunctionsTracer> expandForward(JunctionsTracer trav, int distX, int distY) {
+        ArrayList<JunctionsTracer> tracers = new ArrayList<>();
+
+        EnterWireJunction travJunction = (EnterWireJunction) trav.getJunction();
+        ArrayList<WireDirection> primaryDirs = RouteUtil.primaryDirections(distX, distY);
+
+        boolean isRepeatableLongLine = false;
+        if (travJunction.getWireLength() >= H_LONG_LINE_THRESHOLD
+                && (Math.abs(distX) > H_LONG_LINE_THRESHOLD || Math.abs(distY) > V_LONG_LINE_THRESHOLD)) {
+            isRepeatableLongLine = true;
+        }
+
+        for (ExitWireJunction exit : FabricBrowser.getEntranceFanOut(coreDesign, travJunction)) {
+
+            if (isRepeatableLongLine && (!exit.getDirection().equals(travJunction.getDirection())
+                    || exit.getWireLength() < H_LONG_LINE_THRESHOLD))
+                continue;
+
+            EnterWireJunction wireDest = exit.getDestJunction(coreDesign);
+
+            if (wireDest == null)
+                continue;
+
+            if (RouteForge.isLocked(wireDest.getNodeId()) || RouteForge.isLocked(exit.getNodeId()))
+                continue;
+
+            if (searchFootprint.contains(wireDest.getNodeId()))
+                continue;
+
+            if (!primaryDirs.contains(exit.getDirection()))
+                continue;
+
+            if (banList.contains(wireDest.getNodeId()) || banList.contains(exit.getNodeId()))
+                continue;
+
+            // Carrying on along a long line takes no tile path worth counting
+            int tilePathCost = isRepeatableLongLine ? 0 : exit.getTilePathCost();
+            JunctionsTracer tracer = new JunctionsTracer(wireDest, trav,
+                    tilePathCost + getCongestionCost(exit, wireDest));
+            searchQueue.add(tracer);
+            searchFootprint.add(wireDest.getNodeId());
+            tracers.add(tracer);
+        }
+
+        return tracers;
+    }
+
+    /*
+     * Forward search from the source and backward search from the sink lead-ins, expanding the smaller frontier first
+     *   A template is found when both searches reach the same entering wire; each lead-in is used by one template
+     */
+    private void runBidirectional() {
+
+        beginTiming();
+
+        Tile srcIntTile = coreDesign.getDevice().getTile(src.getTileName());
+        Tile snkIntTile = coreDesign.getDevice().getTile(snk.getTileName());
+
+        int snkTileX = snkIntTile.getTileXCoordinate();
+        int snkTileY = snkIntTile.getTileYCoordinate();
 
-            boolean isRepeatableLongLine = false;
-            if (travJunction.getWireLength() >= H_LONG_LINE_THRESHOLD
-                    && (Math.abs(distX) > H_LONG_LINE_THRESHOLD || Math.abs(distY) > V_LONG_LINE_THRESHOLD)) {
-                isRepeatableLongLine = true;
+        int srcTileX = srcIntTile.getTileXCoordinate();
+        int srcTileY = srcIntTile.getTileYCoordinate();
+
+        PriorityQueue<JunctionsTracer> backwardQueue = backwardSearch.searchQueue;
+        HashMap<Integer, HashMap<Integer, JunctionsTracer>> backwardTracers = backwardSearch.backwardTracers;
+        HashMap<Integer, JunctionsTracer> forwardTracers = backwardSearch.forwardTracers;
+
+        availableLeadIns = new HashMap<>();
+        for (EnterWireJunction leadIn : leadIns)
+            availableLeadIns.put(leadIn.getNodeId(), leadIn);
+
+        int templateCount = 0;
+
+        if (!backwardSearch.isSeeded) {
+            backwardSearch.isSeeded = true;
+
+            for (EnterWireJunction leadIn : leadIns) {
+                if (banList.contains(leadIn.getNodeId()) || backwardTracers.containsKey(leadIn.getNodeId()))
+                    continue;
+
+                JunctionsTracer leadInTracer = JunctionsTracer.newBackwardHeadTracer(leadIn, srcTileX, srcTileY);
+                backwardTracers.computeIfAbsent(leadIn.getNodeId(), k -> new HashMap<>())
+                        .put(leadIn.getNodeId(), leadInTracer);
+                backwardQueue.add(leadInTracer);
             }
+        }
 
-            if (isRepeatableLongLine) {
-                for (ExitWireJunction exit : fanOut) {
+        if (searchQueue.isEmpty()) {
 
-                    if (exit.getDirection().equals(travJunction.getDirection())
-                            && exit.getWireLength() >= H_LONG_LINE_THRESHOLD) {
-                        EnterWireJunction wireDest = exit.getDestJunction(coreDesign);
+            JunctionsTracer srcTracer = JunctionsTracer.newHeadTracer(src, snkTileX, snkTileY);
+            for (ExitWireJunction exit : FabricBrowser.findReachableExits(coreDesign, src)) {
+                EnterWireJunction wireDest = exit.getDestJunction(coreDesign);
+                if (wireDest == null || RouteForge.isLocked(wireDest.getNodeId()) || RouteForge.isLocked(exit.getNodeId()))
+                    continue;
 
-                        if (RouteForge.isLocked(wireDest.getNodeName()) || RouteForge.isLocked(exit.getNodeName()))
-                            continue;
+                JunctionsTracer tracer = new JunctionsTracer(wireDest, srcTracer,
+                        exit.getTilePathCost() + getCongestionCost(exit, wireDest));
+                searchFootprint.add(wireDest.getNodeId());
+                forwardTracers.put(wireDest.getNodeId(), tracer);
+                searchQueue.add(tracer);
 
-                        if (searchFootprint.contains(wireDest.getNodeName()))
-                            continue;
+                if (tryMeet(tracer, backwardTracers.get(wireDest.getNodeId())))
+                    templateCount += 1;
+            }
+        }
 
-                        if (!primaryDirs.contains(exit.getDirection()))
-                            continue;
+        while (templateCount < batchSize) {
+            if (searchQueue.isEmpty() && backwardQueue.isEmpty())
+                throw new DesignFailureException("Route template search exhausted.");
 
-                        if (banList.contains(wireDest.getNodeName()) || banList.contains(exit.getNodeName()))
-                            continue;
+            boolean isForward = backwardQueue.isEmpty()
+                    || (!searchQueue.isEmpty() && searchQueue.size() <= backwardQueue.size());
 
-                        searchQueue.add(new JunctionsTracer(wireDest, trav, 0));
-                        searchFootprint.add(wireDest.getNodeName());
-                    }
+            JunctionsTracer trav = isForward ? searchQueue.remove() : backwardQueue.remove();
+            EnterWireJunction travJunction = (EnterWireJunction) trav.getJunction();
+
+            if (trav.getDepth() > 1000)
+                throw new DesignFailureException("Route template search limit exceeded.");
+
+            if (isForward) {
+                Tile travTile = coreDesign.getDevice().getTile(travJunction.getTileName());
+                int distX = snkTileX - travTile.getTileXCoordinate();
+                int distY = snkTileY - travTile.getTileYCoordinate();
+
+                // Only lead-ins lead on to the sink, and those are already met through the backward search
+                if (distX == 0 && distY == 0)
+                    continue;
+
+                for (JunctionsTracer tracer : expandForward(trav, distX, distY)) {
+                    int nodeId = tracer.getJunction().getNodeId();
+                    forwardTracers.put(nodeId, tracer);
+
+                    if (tryMeet(tracer, backwardTracers.get(nodeId)))
+                        templateCount += 1;
                 }
             }
             else {
-                for (ExitWireJunction exit : fanOut) {
-                    EnterWireJunction wireDest = exit.getDestJunction(coreDesign);
+                // The lead-in of this tree was used by an earlier template, so its tree is left to die out
+                int leadInId = trav.getHead().getJunction().getNodeId();
+                if (!isLeadInAvailable(leadInId))
+                    continue;
 
-                    if (wireDest == null)
-                        continue;
+                ExitWireJunction hopSrc = travJunction.getSrcJunction(coreDesign);
 
-                    if (RouteForge.isLocked(wireDest.getNodeName()) || RouteForge.isLocked(exit.getNodeName()))
-                        continue;
+                if (hopSrc == null || RouteForge.isLocked(hopSrc.getNodeId()) || banList.contains(hopSrc.getNodeId()))
+                    continue;
+
+                // Keep to hops that the forward search would take
+                Tile hopTile = coreDesign.getDevice().getTile(hopSrc.getTileName());
+                ArrayList<WireDirection> primaryDirs = RouteUtil.primaryDirections(
+                        snkTileX - hopTile.getTileXCoordinate(), snkTileY - hopTile.getTileYCoordinate());
+                if (!primaryDirs.contains(hopSrc.getDirection()))
+                    continue;
 
-                    if (searchFootprint.contains(wireDest.getNodeName()))
+                for (EnterWireJunction entrance : FabricBrowser.getExitFanOut(coreDesign, hopSrc)) {
+
+                    if (RouteForge.isLocked(entrance.getNodeId()))
                         continue;
 
-                    if (!primaryDirs.contains(exit.getDirection()))
+                    HashMap<Integer, JunctionsTracer> entranceTracers = backwardTracers.get(entrance.getNodeId());
+                    if (entranceTracers != null && entranceTracers.containsKey(leadInId))
                         continue;
 
-                    if (banList.contains(wireDest.getNodeName()) || banList.contains(exit.getNodeName()))
+                    if (banList.contains(entrance.getNodeId()))
                         continue;
 
-                    searchQueue.add(new JunctionsTracer(wireDest, trav, exit.getTilePathCost()));
-                    searchFootprint.add(wireDest.getNodeName());
+                    JunctionsTracer tracer = new JunctionsTracer(entrance, trav,
+                            entrance.getTilePathCost() + getCongestionCost(hopSrc, travJunction));
+                    backwardTracers.computeIfAbsent(entrance.getNodeId(), k -> new HashMap<>()).put(leadInId, tracer);
+                    backwardQueue.add(tracer);
+
+                    if (tryMeet(forwardTracers.get(entrance.getNodeId()), tracer))
+                        templateCount += 1;
                 }
             }
         }
@@ -255,4 +459,87 @@ public class TemplateSearchJob {
         finishTiming();
     }
 
+    private boolean isLeadInAvailable(int leadInId) {
+        return availableLeadIns.containsKey(leadInId);
+    }
+
+    /*
+     * Node IDs of both the entering and the exiting junctions along a tracer's chain
+     */
+    private Set<Integer> getChainNodeIds(JunctionsTracer tracer) {
+        Set<Integer> nodeIds = new HashSet<>();
+        for (JunctionsTracer trav = tracer; trav != null; trav = trav.getParent()) {
+            EnterWireJunction junction = (EnterWireJunction) trav.getJunction();
+            nodeIds.add(junction.getNodeId());
+            // The forward head is the source itself, whose exiting junction isn't part of the template
+            if (trav.getDepth() > 0 || trav.isBackward()) {
+                ExitWireJunction hopSrc = junction.getSrcJunction(coreDesign);
+                if (hopSrc != null)
+                    nodeIds.add(hopSrc.getNodeId());
+            }
+        }
+        return nodeIds;
+    }
+
+    /*
+     * Joins the forward tracer with the cheapest of the backward tracers that reached the same entering wire
+     *   Backward tracers of lead-ins used by earlier templates are dropped on the way
+     */
+    private boolean tryMeet(JunctionsTracer forward, HashMap<Integer, JunctionsTracer> backwardTracers) {
+        if (forward == null || backwardTracers == null)
+            return false;
+
+        backwardTracers.keySet().removeIf(leadInId -> !isLeadInAvailable(leadInId));
+
+        ArrayList<JunctionsTracer> candidates = new ArrayList<>(backwardTracers.values());
+        candidates.sort(Comparator.comparingInt(JunctionsTracer::getEstimatedCost));
+        for (JunctionsTracer backward : candidates) {
+            if (tryMeet(forward, backward))
+                return true;
+        }
+        return false;
+    }
+
+    /*
+     * Joins a forward and a backward tracer that reached the same entering wire into a template
+     *   Fails if either doesn't exist, if the backward tracer's lead-in was already used by another template,
+     *   or if both halves run through a common node, as the template would then loop back on itself
+     */
+    private boolean tryMeet(JunctionsTracer forward, JunctionsTracer backward) {
+        if (forward == null || backward == null)
+            return false;
+
+        EnterWireJunction leadIn = (EnterWireJunction) backward.getHead().getJunction();
+        if (!isLeadInAvailable(leadIn.getNodeId()))
+            return false;
+
+        // Both tracers hold the meeting wire; the rest of the halves must be disjoint
+        Set<Integer> forwardNodeIds = getChainNodeIds(forward);
+        for (int nodeId : getChainNodeIds(backward.getParent())) {
+            if (forwardNodeIds.contains(nodeId))
+                return false;
+        }
+
+        RouteTemplate template = new RouteTemplate(coreDesign, src, snk);
+        snk.setTilePathCost(leadIn.getTilePathCost());
+
+        // Backward tracers are pushed from the lead-in back towards the meeting wire, which comes from the forward tracer
+        ArrayList<JunctionsTracer> backwardChain = new ArrayList<>();
+        for (JunctionsTracer trav = backward.getParent(); trav != null; trav = trav.getParent())
+            backwardChain.add(trav);
+        for (int i = backwardChain.size() - 1; i >= 0; i--)
+            template.pushEnterWireJunction(coreDesign, (EnterWireJunction) backwardChain.get(i).getJunction());
+
+        for (JunctionsTracer trav = forward; trav.getDepth() > 0; trav = trav.getParent())
+            template.pushEnterWireJunction(coreDesign, (EnterWireJunction) trav.getJunction());
+
+        template.readjustCost();
+        results.add(template);
+
+        searchFootprint.add(leadIn.getNodeId());
+        leadIns.remove(leadIn);
+        availableLeadIns.remove(leadIn.getNodeId());
+
+        return true;
+    }
 }
@@ -16,6 +16,8 @@ public class TileCongestionJob implements Callable<Set<Pair<RegisterConnection,
 
     private static final int SINK_TILE_TRAVERSAL_MAX_DEPTH = 8;
     private static final int TILE_TRAVERSAL_MAX_DEPTH = FabricBrowser.TILE_TRAVERSAL_MAX_DEPTH;
+    // Time given to the exact solver before falling back to the deflection heuristic (ms)
+    private static final long SOLVER_TIME_BUDGET = 100;
 
     private long tBegin;
     private long tEnd;
@@ -69,6 +71,23 @@ public class TileCongestionJob implements Callable<Set<Pair<RegisterConnection,
             tilePathChoicesMap.put(triple.getMiddle(), pathChoices);
         }
 
+        // Exact solve first; the deflection heuristic only runs if the solver runs out of time, or if it proves that
+        //  some route has to give up this tile
+        ArrayList<CustomRoute> routes = new ArrayList<>(tilePathChoicesMap.keySet());
+        TilePathAssignmentSolver solver = new TilePathAssignmentSolver(routes.size());
+        solver.setTimeBudget(SOLVER_TIME_BUDGET);
+        for (int i = 0; i < routes.size(); i++)
+            solver.admit(i, tilePathChoicesMap.get(routes.get(i)));
+
+        ArrayList<TilePath> solution = solver.solveAdmitted();
+        if (solution != null) {
+            for (int i = 0; i < routes.size(); i++)
+                routes.get(i).setPath(solution.get(i));
+
+            finishTiming();
+            return failedRoutes;
+        }
+
         boolean congestionSuccess = false;
         while (!congestionSuccess) {
 
@@ -88,7 +107,7 @@ public class TileCongestionJob implements Callable<Set<Pair<RegisterConnection,
                 tilePathChoicesMap.get(next).addLast(candidatePath);
 
                 for (TilePath conflictingPath : RoutingCalculator.locateTilePathCollisions(candidatePath,
-                        new HashSet<>(results.keySet()))) {
+                        results.keySet())) {
                     // Always preempt conflicts
                     pathQueue.add(results.get(conflictingPath));
                     results.remove(conflictingPath);
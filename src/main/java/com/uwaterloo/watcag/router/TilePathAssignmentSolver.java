@@ -0,0 +1,492 @@
+package com.uwaterloo.watcag.router;
+
+import com.uwaterloo.watcag.router.elements.TilePath;
+
+import java.util.*;
+
+public class TilePathAssignmentSolver {
+
+    /*
+     * Picks one tile path per bit such that no two picked paths share a node
+     *   Paths are bitsets over the nodes used by any candidate, and each admitted path is checked against every other
+     *   path once, building a conflict graph that the search then only looks up
+     *   The search takes the bit with the fewest candidates left first, removes candidates that overlap a picked path
+     *   from every other bit (forward checking), and on a dead end jumps back to the most recent bit that caused it
+     *   (conflict-directed backjumping) instead of the previous bit
+     *   Paths can be admitted over several rounds, e.g. as a cost threshold widens; each round only searches the
+     *   choices that use at least one newly admitted path, since every other choice was already ruled out
+     *   Dead ends are kept as nogoods across rounds: picks that cannot be completed while the bits left to assign
+     *   keep to the candidates they had then. Admitting paths doesn't make them wrong, it only makes them apply less
+     */
+
+    // Upper bound on the number of paths tried per search, after which the search is treated as unsolvable
+    private static final int MAX_ASSIGNMENTS = 1 << 20;
+    // Number of paths tried between checks of the time budget
+    private static final int BUDGET_CHECK_INTERVAL = 1 << 10;
+    // Upper bound on the number of nogoods kept, after which new dead ends are no longer recorded
+    private static final int MAX_NOGOODS = 1 << 12;
+
+    private static final int SUCCESS = Integer.MAX_VALUE;
+    private static final int FAILURE = -1;
+    private static final int PRESENT = -1;
+    private static final int EXCLUDED = -2;
+
+    private static class Candidate {
+        private int id;
+        private int bit;
+        private TilePath path;
+        private long[] nodes;
+        private boolean isNew;
+
+        // IDs of the candidates of other bits that share a node with this one
+        private BitSet conflictingIds;
+
+        private Candidate(int id, int bit, TilePath path, long[] nodes) {
+            this.id = id;
+            this.bit = bit;
+            this.path = path;
+            this.nodes = nodes;
+            isNew = true;
+            conflictingIds = new BitSet();
+        }
+    }
+
+    private static class Nogood {
+        // IDs of the picks that cannot be completed
+        private int[] ids;
+        // Bits that were left to assign, and the IDs of the candidates each bit could take at the time
+        private BitSet futureBits;
+        private BitSet[] domains;
+
+        private Nogood(int[] ids, BitSet futureBits, BitSet[] domains) {
+            this.ids = ids;
+            this.futureBits = futureBits;
+            this.domains = domains;
+        }
+    }
+
+    private final int bitWidth;
+    private final ArrayList<ArrayList<Candidate>> candidates;
+    private final ArrayList<Candidate> allCandidates;
+    private final ArrayList<Set<TilePath>> admittedPaths;
+    private final HashMap<Integer, Integer> localIndices;
+
+    // Level at which each candidate was removed from its bit, PRESENT, or EXCLUDED for the whole search
+    private int[][] removedAt;
+    private final int[] domainSize;
+
+    private final boolean[] isAssigned;
+    private final int[] assignment;
+    private final int[] levelBits;
+    private final int[] bitLevels;
+
+    // Levels whose picks removed candidates of each bit, and levels blamed for dead ends below each bit
+    private final BitSet[] pastChecks;
+    private final BitSet[] conflicts;
+
+    // Nogoods indexed by each of their picks, and those without picks, which apply to whole searches
+    private final HashMap<Integer, ArrayList<Nogood>> nogoodsByPick;
+    private final ArrayList<Nogood> rootNogoods;
+    private int nogoodCount;
+    // IDs of the candidates each bit could take at the start of the current search
+    private BitSet[] rootDomains;
+
+    private int assignmentCount;
+    private long timeBudget;
+    private long deadline;
+    private boolean isOutOfBudget;
+
+    public TilePathAssignmentSolver(int bitWidth) {
+        this.bitWidth = bitWidth;
+
+        candidates = new ArrayList<>();
+        admittedPaths = new ArrayList<>();
+        for (int bit = 0; bit < bitWidth; bit++) {
+            candidates.add(new ArrayList<>());
+            admittedPaths.add(new HashSet<>());
+        }
+        allCandidates = new ArrayList<>();
+        localIndices = new HashMap<>();
+
+        removedAt = new int[bitWidth][];
+        domainSize = new int[bitWidth];
+
+        isAssigned = new boolean[bitWidth];
+        assignment = new int[bitWidth];
+        levelBits = new int[bitWidth];
+        bitLevels = new int[bitWidth];
+
+        pastChecks = new BitSet[bitWidth];
+        conflicts = new BitSet[bitWidth];
+        for (int bit = 0; bit < bitWidth; bit++) {
+            pastChecks[bit] = new BitSet();
+            conflicts[bit] = new BitSet();
+        }
+
+        nogoodsByPick = new HashMap<>();
+        rootNogoods = new ArrayList<>();
+        nogoodCount = 0;
+
+        timeBudget = Long.MAX_VALUE;
+    }
+
+    /*
+     * Returns the picked path of each bit in bit order, or null if there is no overlap-free choice
+     */
+    public static ArrayList<TilePath> solve(List<? extends Collection<TilePath>> allPaths) {
+        TilePathAssignmentSolver solver = new TilePathAssignmentSolver(allPaths.size());
+        for (int bit = 0; bit < allPaths.size(); bit++) {
+            if (allPaths.get(bit) != null)
+                solver.admit(bit, allPaths.get(bit));
+        }
+        return solver.solveAdmitted();
+    }
+
+    /*
+     * Adds paths to the choices of a bit; paths already admitted for the bit are ignored
+     */
+    public void admit(int bit, Collection<TilePath> paths) {
+        ArrayList<Candidate> bitCandidates = candidates.get(bit);
+        for (TilePath path : paths) {
+            if (!admittedPaths.get(bit).add(path))
+                continue;
+
+            int[] nodePath = path.getNodePath();
+            for (int nodeId : nodePath)
+                localIndices.putIfAbsent(nodeId, localIndices.size());
+
+            long[] nodes = new long[(localIndices.size() + 63) / 64];
+            for (int nodeId : nodePath) {
+                int localIndex = localIndices.get(nodeId);
+                nodes[localIndex >>> 6] |= 1L << localIndex;
+            }
+
+            Candidate candidate = new Candidate(allCandidates.size(), bit, path, nodes);
+            for (Candidate other : allCandidates) {
+                if (other.bit != bit && intersects(nodes, other.nodes)) {
+                    candidate.conflictingIds.set(other.id);
+                    other.conflictingIds.set(candidate.id);
+                }
+            }
+            allCandidates.add(candidate);
+
+            // Cheapest first, in admission order among equal costs
+            int position = bitCandidates.size();
+            while (position > 0 && bitCandidates.get(position - 1).path.getCost() > path.getCost())
+                position -= 1;
+            bitCandidates.add(position, candidate);
+        }
+    }
+
+    /*
+     * Wall-clock limit of each call to solveAdmitted(); there is no limit by default
+     */
+    public void setTimeBudget(long timeBudget) {
+        this.timeBudget = timeBudget;
+    }
+
+    /*
+     * Whether the last call to solveAdmitted() gave up, rather than ruled out every choice
+     */
+    public boolean isOutOfBudget() {
+        return isOutOfBudget;
+    }
+
+    /*
+     * Searches the choices that use at least one path admitted since the last call
+     *   Returns the picked path of each bit in bit order, or null if there is no such overlap-free choice
+     */
+    public ArrayList<TilePath> solveAdmitted() {
+        ArrayList<TilePath> results = null;
+
+        isOutOfBudget = false;
+        deadline = timeBudget == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + timeBudget;
+
+        if (bitWidth == 0)
+            results = new ArrayList<>();
+
+        // Split by the first bit with a new path: bits before it keep to old paths, bits after it take any path
+        for (int newBit = 0; newBit < bitWidth && results == null && !isOutOfBudget; newBit++) {
+            if (!hasNewCandidate(newBit))
+                continue;
+            if (search(newBit))
+                results = getAssignment();
+        }
+
+        // Only a search that ran to the end rules out the choices it covered; after a cutoff, the paths stay new so
+        //   that the next call covers the same choices again, helped by the nogoods kept from this one
+        if (results == null && !isOutOfBudget) {
+            for (ArrayList<Candidate> bitCandidates : candidates) {
+                for (Candidate candidate : bitCandidates)
+                    candidate.isNew = false;
+            }
+        }
+
+        return results;
+    }
+
+    private boolean hasNewCandidate(int bit) {
+        for (Candidate candidate : candidates.get(bit)) {
+            if (candidate.isNew)
+                return true;
+        }
+        return false;
+    }
+
+    private ArrayList<TilePath> getAssignment() {
+        ArrayList<TilePath> results = new ArrayList<>();
+        for (int bit = 0; bit < bitWidth; bit++)
+            results.add(candidates.get(bit).get(assignment[bit]).path);
+        return results;
+    }
+
+    private boolean search(int newBit) {
+        rootDomains = new BitSet[bitWidth];
+        for (int bit = 0; bit < bitWidth; bit++) {
+            ArrayList<Candidate> bitCandidates = candidates.get(bit);
+            removedAt[bit] = new int[bitCandidates.size()];
+            domainSize[bit] = 0;
+            rootDomains[bit] = new BitSet();
+
+            for (int c = 0; c < bitCandidates.size(); c++) {
+                boolean isNew = bitCandidates.get(c).isNew;
+                if ((bit < newBit && isNew) || (bit == newBit && !isNew)) {
+                    removedAt[bit][c] = EXCLUDED;
+                }
+                else {
+                    removedAt[bit][c] = PRESENT;
+                    domainSize[bit] += 1;
+                    rootDomains[bit].set(bitCandidates.get(c).id);
+                }
+            }
+
+            if (domainSize[bit] == 0)
+                return false;
+
+            isAssigned[bit] = false;
+            pastChecks[bit].clear();
+            conflicts[bit].clear();
+        }
+
+        assignmentCount = 0;
+        return label(0) == SUCCESS;
+    }
+
+    /*
+     * Node bitsets only grow as paths are admitted, so words past the shorter one are empty in it
+     */
+    private static boolean intersects(long[] a, long[] b) {
+        int length = Math.min(a.length, b.length);
+        for (int i = 0; i < length; i++) {
+            if ((a[i] & b[i]) != 0)
+                return true;
+        }
+        return false;
+    }
+
+    /*
+     * Unassigned bit with the fewest candidates left
+     */
+    private int selectBit() {
+        int selected = -1;
+        for (int bit = 0; bit < bitWidth; bit++) {
+            if (!isAssigned[bit] && (selected == -1 || domainSize[bit] < domainSize[selected]))
+                selected = bit;
+        }
+        return selected;
+    }
+
+    private boolean checkBudget() {
+        assignmentCount += 1;
+        if (assignmentCount > MAX_ASSIGNMENTS
+                || (assignmentCount % BUDGET_CHECK_INTERVAL == 0 && System.currentTimeMillis() > deadline))
+            isOutOfBudget = true;
+        return !isOutOfBudget;
+    }
+
+    /*
+     * Removes candidates of unassigned bits that overlap the given candidate
+     *   Returns the first bit left without candidates, or -1 if every bit still has one
+     */
+    private int forwardCheck(int level, int bit, int candidate) {
+        BitSet conflictingIds = candidates.get(bit).get(candidate).conflictingIds;
+        for (int other = 0; other < bitWidth; other++) {
+            if (isAssigned[other])
+                continue;
+
+            for (int c = 0; c < removedAt[other].length; c++) {
+                if (removedAt[other][c] == PRESENT && conflictingIds.get(candidates.get(other).get(c).id)) {
+                    removedAt[other][c] = level;
+                    domainSize[other] -= 1;
+                    pastChecks[other].set(level);
+                }
+            }
+
+            if (domainSize[other] == 0)
+                return other;
+        }
+        return -1;
+    }
+
+    private void undoForwardCheck(int level) {
+        for (int other = 0; other < bitWidth; other++) {
+            if (!pastChecks[other].get(level))
+                continue;
+
+            for (int c = 0; c < removedAt[other].length; c++) {
+                if (removedAt[other][c] == level) {
+                    removedAt[other][c] = PRESENT;
+                    domainSize[other] += 1;
+                }
+            }
+            pastChecks[other].clear(level);
+        }
+    }
+
+    /*
+     * Looks for a nogood that the current picks complete, with each of its bits left to assign still kept within
+     *   the candidates it had when the nogood was learned; only nogoods involving the given pick are looked at
+     *   Returns the levels that brought the nogood about, or null if there is no such nogood
+     */
+    private BitSet checkNogoods(int id) {
+        ArrayList<Nogood> pickNogoods = nogoodsByPick.get(id);
+        if (pickNogoods != null) {
+            for (Nogood nogood : pickNogoods) {
+                BitSet levels = getViolatingLevels(nogood);
+                if (levels != null)
+                    return levels;
+            }
+        }
+
+        for (Nogood nogood : rootNogoods) {
+            BitSet levels = getViolatingLevels(nogood);
+            if (levels != null)
+                return levels;
+        }
+        return null;
+    }
+
+    private BitSet getViolatingLevels(Nogood nogood) {
+        BitSet levels = new BitSet();
+
+        for (int id : nogood.ids) {
+            int bit = allCandidates.get(id).bit;
+            if (!isAssigned[bit] || candidates.get(bit).get(assignment[bit]).id != id)
+                return null;
+            levels.set(bitLevels[bit]);
+        }
+
+        for (int bit = nogood.futureBits.nextSetBit(0); bit >= 0; bit = nogood.futureBits.nextSetBit(bit + 1)) {
+            ArrayList<Candidate> bitCandidates = candidates.get(bit);
+            if (isAssigned[bit]) {
+                if (!nogood.domains[bit].get(bitCandidates.get(assignment[bit]).id))
+                    return null;
+                levels.set(bitLevels[bit]);
+                continue;
+            }
+
+            for (int c = 0; c < removedAt[bit].length; c++) {
+                if (removedAt[bit][c] == PRESENT && !nogood.domains[bit].get(bitCandidates.get(c).id))
+                    return null;
+            }
+            // Kept within the domain by the picks that removed the rest of its candidates
+            levels.or(pastChecks[bit]);
+        }
+
+        return levels;
+    }
+
+    /*
+     * Records that the picks at the given levels cannot be completed, given the current search's starting domains
+     *   of the bits that are left to assign
+     */
+    private void recordNogood(BitSet levels) {
+        if (nogoodCount >= MAX_NOGOODS)
+            return;
+
+        int[] ids = new int[levels.cardinality()];
+        int i = 0;
+        for (int level = levels.nextSetBit(0); level >= 0; level = levels.nextSetBit(level + 1))
+            ids[i++] = candidates.get(levelBits[level]).get(assignment[levelBits[level]]).id;
+
+        BitSet futureBits = new BitSet();
+        for (int bit = 0; bit < bitWidth; bit++) {
+            if (!isAssigned[bit])
+                futureBits.set(bit);
+        }
+
+        Nogood nogood = new Nogood(ids, futureBits, rootDomains);
+        if (ids.length == 0)
+            rootNogoods.add(nogood);
+        for (int id : ids)
+            nogoodsByPick.computeIfAbsent(id, k -> new ArrayList<>()).add(nogood);
+        nogoodCount += 1;
+    }
+
+    /*
+     * Assigns a bit at the given level and everything below it
+     *   Returns SUCCESS, or the level to jump back to (FAILURE if no level can fix the dead end)
+     */
+    private int label(int level) {
+        if (level == bitWidth)
+            return SUCCESS;
+
+        int bit = selectBit();
+        isAssigned[bit] = true;
+        levelBits[level] = bit;
+        bitLevels[bit] = level;
+        conflicts[bit].clear();
+
+        for (int c = 0; c < removedAt[bit].length; c++) {
+            if (removedAt[bit][c] != PRESENT)
+                continue;
+
+            if (!checkBudget())
+                break;
+
+            assignment[bit] = c;
+
+            int wipedOutBit = forwardCheck(level, bit, c);
+            BitSet nogoodLevels = wipedOutBit == -1 ? checkNogoods(candidates.get(bit).get(c).id) : null;
+            if (wipedOutBit == -1 && nogoodLevels == null) {
+                int result = label(level + 1);
+                if (result == SUCCESS)
+                    return SUCCESS;
+
+                if (result != level) {
+                    undoForwardCheck(level);
+                    isAssigned[bit] = false;
+                    return result;
+                }
+            }
+            else if (wipedOutBit != -1) {
+                conflicts[bit].or(pastChecks[wipedOutBit]);
+            }
+            else {
+                conflicts[bit].or(nogoodLevels);
+            }
+
+            undoForwardCheck(level);
+        }
+
+        if (isOutOfBudget) {
+            isAssigned[bit] = false;
+            return FAILURE;
+        }
+
+        BitSet jumpSet = (BitSet) conflicts[bit].clone();
+        jumpSet.or(pastChecks[bit]);
+        jumpSet.clear(level, bitWidth);
+
+        isAssigned[bit] = false;
+        recordNogood(jumpSet);
+
+        int jumpLevel = jumpSet.length() - 1;
+        if (jumpLevel < 0)
+            return FAILURE;
+
+        jumpSet.clear(jumpLevel);
+        conflicts[levelBits[jumpLevel]].or(jumpSet);
+        return jumpLevel;
+    }
+}
@@ -4,55 +4,105 @@ import com.uwaterloo.watcag.router.RouteForge;
 import com.uwaterloo.watcag.router.elements.EnterWireJunction;
 import com.uwaterloo.watcag.router.elements.ExitWireJunction;
 import com.uwaterloo.watcag.router.elements.TilePath;
-import com.uwaterloo.watcag.router.elements.WireDirection;
 import com.uwaterloo.watcag.util.RouteUtil;
 import com.xilinx.rapidwright.design.Design;
 import com.xilinx.rapidwright.device.PIP;
+import com.xilinx.rapidwright.device.Tile;
+import com.xilinx.rapidwright.device.TileTypeEnum;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class FabricBrowser {
 
     private static class FanOutBundle {
         /*
          * Internal class to track cost of entrance-to-exit fan out costs
+         *   Wires are local wire indexes of the tile type, so bundles are shared by every tile of the type
          */
-        private String wireName;
+        private int wireIndex;
         private int pathCost;
+        private int[] viaWires;
 
-        public FanOutBundle(String wireName, int pathCost) {
-            this.wireName = wireName;
+        public FanOutBundle(int wireIndex, int pathCost, int[] viaWires) {
+            this.wireIndex = wireIndex;
             this.pathCost = pathCost;
+            this.viaWires = viaWires;
         }
 
-        public String getWireName() {
-            return wireName;
+        public int getWireIndex() {
+            return wireIndex;
         }
 
         public int getPathCost() {
             return pathCost;
         }
+
+        // Buffer wires the search passed through to reach the wire
+        public int[] getViaWires() {
+            return viaWires;
+        }
+    }
+
+    private static class TileFanOut<J> {
+        /*
+         * Internal class pairing the fan-out junctions of a single tile with the bundles they were built from
+         */
+        private Set<J> junctions;
+        private ArrayList<J> junctionList;
+        private ArrayList<FanOutBundle> bundleList;
+
+        public TileFanOut() {
+            junctionList = new ArrayList<>();
+            bundleList = new ArrayList<>();
+        }
+
+        public void add(J junction, FanOutBundle bundle) {
+            junctionList.add(junction);
+            bundleList.add(bundle);
+        }
+
+        public TileFanOut<J> seal() {
+            junctions = Collections.unmodifiableSet(new LinkedHashSet<>(junctionList));
+            return this;
+        }
+
+        public Set<J> getJunctions() {
+            return junctions;
+        }
+
+        public int size() {
+            return junctionList.size();
+        }
+
+        public J getJunction(int i) {
+            return junctionList.get(i);
+        }
+
+        public FanOutBundle getBundle(int i) {
+            return bundleList.get(i);
+        }
     }
 
     private static class NodeDepthPair {
         /*
-         * Internal class used to track depth of BFS searches
+         * Internal class used to track depth of BFS searches, identifying nodes by local wire index
          */
-        private String nodeName;
+        private int wireIndex;
         private int depth;
 
-        public NodeDepthPair(String nodeName) {
-            this.nodeName = nodeName;
+        public NodeDepthPair(int wireIndex) {
+            this.wireIndex = wireIndex;
             depth = 0;
         }
 
-        public NodeDepthPair(String nodeName, int depth) {
-            this.nodeName = nodeName;
+        public NodeDepthPair(int wireIndex, int depth) {
+            this.wireIndex = wireIndex;
             this.depth = depth;
         }
 
-        public String getNodeName() {
-            return nodeName;
+        public int getWireIndex() {
+            return wireIndex;
         }
 
         public int getDepth() {
@@ -60,142 +110,204 @@ public class FabricBrowser {
         }
     }
 
-    public static final HashMap<String, ArrayList<PIP>> pipCache = new HashMap<>();
-    public static final HashMap<String, Set<FanOutBundle>> exitFanOutCache = new HashMap<>();
-    public static final HashMap<String, Set<FanOutBundle>> entranceFanOutCache = new HashMap<>();
+    public static final Map<String, ArrayList<PIP>> pipCache = new ConcurrentHashMap<>();
+    public static final Map<TileTypeEnum, TileTypeIndex> tileTypeIndexCache = new ConcurrentHashMap<>();
+    // Raw fan-out of each tile type, keyed by tile type then local wire index, independent of tile location and locks
+    public static final Map<TileTypeEnum, Map<Integer, List<FanOutBundle>>> exitFanOutCache = new ConcurrentHashMap<>();
+    public static final Map<TileTypeEnum, Map<Integer, List<FanOutBundle>>> entranceFanOutCache = new ConcurrentHashMap<>();
+
+    // Junctions built from the fan-out caches, keyed by node ID and shared read-only between routing threads
+    private static final Map<Integer, TileFanOut<EnterWireJunction>> exitFanOutJunctions = new ConcurrentHashMap<>();
+    private static final Map<Integer, TileFanOut<ExitWireJunction>> entranceFanOutJunctions = new ConcurrentHashMap<>();
+
+    // Intra-tile paths of each tile type as local wire indices, keyed by entrance wire, exit wire and depth; lock-free
+    private static final Map<TileTypeEnum, Map<Long, List<int[]>>> tilePathCache = new ConcurrentHashMap<>();
 
     public static final int TILE_TRAVERSAL_MAX_DEPTH = 4;
 
     public static ArrayList<PIP> getTilePIPs(Design d, String tileName) {
-        synchronized (pipCache) {
-            if (!pipCache.containsKey(tileName))
-                pipCache.put(tileName, d.getDevice().getTile(tileName).getPIPs());
-            return pipCache.get(tileName);
-        }
+        return pipCache.computeIfAbsent(tileName, k -> d.getDevice().getTile(k).getPIPs());
     }
 
-    public static Set<PIP> getFwdPIPs(Design d, String tileName, String nodeName) {
-        Set<PIP> pipSet = new HashSet<>();
+    /*
+     * PIP adjacency index of the tile's type, built once on first access and shared across all tiles of the type
+     */
+    public static TileTypeIndex getTileTypeIndex(Design d, String tileName) {
+        Tile tile = d.getDevice().getTile(tileName);
+        TileTypeIndex index = tileTypeIndexCache.get(tile.getTileTypeEnum());
+        if (index == null)
+            index = tileTypeIndexCache.computeIfAbsent(tile.getTileTypeEnum(), k -> new TileTypeIndex(tile));
+        return index;
+    }
 
-        synchronized (pipCache) {
-            for (PIP pip : getTilePIPs(d, tileName)) {
-                if (RouteUtil.getPIPNodeName(tileName, pip.getStartWireName()).equals(nodeName))
-                    pipSet.add(pip);
-            }
-        }
-        return pipSet;
+    /*
+     * PIP of the tile between two of its nodes, or null if the tile has no such PIP
+     */
+    public static PIP getPIP(Design d, String tileName, int startNodeId, int endNodeId) {
+        int pipIndex = getTileTypeIndex(d, tileName).getPIP(FabricGraph.getWireIndex(startNodeId),
+                FabricGraph.getWireIndex(endNodeId));
+        if (pipIndex < 0)
+            return null;
+        return getTilePIPs(d, tileName).get(pipIndex);
     }
 
-    public static Set<PIP> getBkwdPIPs(Design d, String tileName, String nodeName) {
-        Set<PIP> pipSet = new HashSet<>();
+    private static String localWireName(String tileName, String nodeName) {
+        return nodeName.substring(tileName.length() + 1);
+    }
 
-        synchronized (pipCache) {
-            for (PIP pip : getTilePIPs(d, tileName)) {
-                if (RouteUtil.getPIPNodeName(tileName, pip.getEndWireName()).equals(nodeName))
-                    pipSet.add(pip);
-            }
-        }
-        return pipSet;
+    public static List<PIP> getFwdPIPs(Design d, String tileName, String nodeName) {
+        TileTypeIndex index = getTileTypeIndex(d, tileName);
+        int[] pipIndexes = index.getFwdPIPs(localWireName(tileName, nodeName));
+
+        List<PIP> pips = new ArrayList<>(pipIndexes.length);
+        if (pipIndexes.length == 0)
+            return pips;
+
+        ArrayList<PIP> tilePIPs = getTilePIPs(d, tileName);
+        for (int pipIndex : pipIndexes)
+            pips.add(tilePIPs.get(pipIndex));
+        return pips;
+    }
+
+    public static List<PIP> getBkwdPIPs(Design d, String tileName, String nodeName) {
+        TileTypeIndex index = getTileTypeIndex(d, tileName);
+        int[] pipIndexes = index.getBkwdPIPs(localWireName(tileName, nodeName));
+
+        List<PIP> pips = new ArrayList<>(pipIndexes.length);
+        if (pipIndexes.length == 0)
+            return pips;
+
+        ArrayList<PIP> tilePIPs = getTilePIPs(d, tileName);
+        for (int pipIndex : pipIndexes)
+            pips.add(tilePIPs.get(pipIndex));
+        return pips;
+    }
+
+    public static void reset() {
+        exitFanOutJunctions.clear();
+        entranceFanOutJunctions.clear();
+    }
+
+    /*
+     * Drops everything derived from the previous device, as tile names, tile type indexes and the fan-outs built on
+     *   their local wire indices are only valid for the device they were read from
+     */
+    static void clearDeviceCaches() {
+        pipCache.clear();
+        tileTypeIndexCache.clear();
+        exitFanOutCache.clear();
+        entranceFanOutCache.clear();
+        tilePathCache.clear();
+        reset();
     }
 
     /*
      * Find all entering wire junctions that can be routed to the exit junction
-     *   Checks cache first before searching
+     *   Checks cache first before searching; the returned set is shared and must not be modified
      */
     public static Set<EnterWireJunction> getExitFanOut(Design d, ExitWireJunction exit) {
+        return getExitTileFanOut(d, exit).getJunctions();
+    }
 
-        synchronized (exitFanOutCache) {
-            if (!exitFanOutCache.containsKey(exit.getWireName()))
-                updateExitFanOut(d, exit.getTileName(), exit.getWireName());
+    private static TileFanOut<EnterWireJunction> getExitTileFanOut(Design d, ExitWireJunction exit) {
+        if (exit.getNodeId() == FabricGraph.NULL_NODE)
+            return buildExitFanOut(d, exit);
 
-            Set<EnterWireJunction> entrances = new LinkedHashSet<>();
-            String tileName = exit.getTileName();
-            for (FanOutBundle bundle : exitFanOutCache.get(exit.getWireName())) {
-                EnterWireJunction entrance = new EnterWireJunction(d, tileName, bundle.getWireName());
-                entrance.setTilePathCost(bundle.getPathCost());
-                entrances.add(entrance);
-            }
-            return entrances;
-        }
+        TileFanOut<EnterWireJunction> fanOut = exitFanOutJunctions.get(exit.getNodeId());
+        if (fanOut == null)
+            fanOut = exitFanOutJunctions.computeIfAbsent(exit.getNodeId(), k -> buildExitFanOut(d, exit));
+        return fanOut;
     }
 
     /*
-     * Find all exiting wire junctions that can be routed from the entrance junction
-     *   Checks cache first before searching
+     * Tile-specific part of the fan-out: keeps the tile type's raw fan-out wires that hop to/from this tile
      */
-    public static synchronized Set<ExitWireJunction> getEntranceFanOut(Design d, EnterWireJunction entrance) {
-
-        synchronized (entranceFanOutCache) {
-            if (!entranceFanOutCache.containsKey(entrance.getWireName()))
-                updateEntranceFanOut(d, entrance.getTileName(), entrance.getWireName());
-
-            Set<ExitWireJunction> exits = new LinkedHashSet<>();
-            String tileName = entrance.getTileName();
-            for (FanOutBundle bundle : entranceFanOutCache.get(entrance.getWireName())) {
-                ExitWireJunction exit = new ExitWireJunction(d, tileName, bundle.getWireName());
-                exit.setTilePathCost(bundle.getPathCost());
-                exits.add(exit);
-            }
+    private static TileFanOut<EnterWireJunction> buildExitFanOut(Design d, ExitWireJunction exit) {
+        String tileName = exit.getTileName();
+        TileTypeIndex index = getTileTypeIndex(d, tileName);
+
+        int tileSlot = FabricGraph.getTileSlot(tileName);
 
-            return exits;
+        TileFanOut<EnterWireJunction> fanOut = new TileFanOut<>();
+        for (FanOutBundle bundle : getRawExitFanOut(index, exit.getWireName())) {
+            if (!isEnterHop(d, tileName, tileSlot, index, bundle.getWireIndex()))
+                continue;
+
+            EnterWireJunction entrance = new EnterWireJunction(d, tileName, index.getWireName(bundle.getWireIndex()));
+            entrance.setTilePathCost(bundle.getPathCost());
+            fanOut.add(entrance, bundle);
         }
+        return fanOut.seal();
     }
 
     /*
-     * BFS search for all entering wires that can be routed to the exit junction
-     *   Results are cached in exitFanOutCache, replacing previous cache if there are any
+     * Find all exiting wire junctions that can be routed from the entrance junction
+     *   Checks cache first before searching; the returned set is shared and must not be modified
      */
-    private static void updateExitFanOut(Design d, String tileName, String exitWireName) {
-
-        Set<FanOutBundle> results = new LinkedHashSet<>();
-
-        Queue<NodeDepthPair> queue = new LinkedList<>();
-        queue.add(new NodeDepthPair(tileName + "/" + exitWireName));
-
-        HashSet<String> footprint = new HashSet<>();
-
-        while (!queue.isEmpty()) {
-            NodeDepthPair trav = queue.remove();
+    public static Set<ExitWireJunction> getEntranceFanOut(Design d, EnterWireJunction entrance) {
+        return getEntranceTileFanOut(d, entrance).getJunctions();
+    }
 
-            if (trav.getDepth() >= TILE_TRAVERSAL_MAX_DEPTH)
-                break;
+    private static TileFanOut<ExitWireJunction> getEntranceTileFanOut(Design d, EnterWireJunction entrance) {
+        if (entrance.getNodeId() == FabricGraph.NULL_NODE)
+            return buildEntranceFanOut(d, entrance);
 
-            for (PIP pip : getBkwdPIPs(d, tileName, trav.getNodeName())) {
-                String nextNodeName = RouteUtil.getPIPNodeName(tileName, pip.getStartWireName());
+        TileFanOut<ExitWireJunction> fanOut = entranceFanOutJunctions.get(entrance.getNodeId());
+        if (fanOut == null)
+            fanOut = entranceFanOutJunctions.computeIfAbsent(entrance.getNodeId(),
+                    k -> buildEntranceFanOut(d, entrance));
+        return fanOut;
+    }
 
-                WireDirection dir = RouteUtil.extractEnterWireDirection(d, tileName, pip.getStartWireName());
-                int wireLength = RouteUtil.extractEnterWireLength(d, tileName, pip.getStartWireName());
+    private static TileFanOut<ExitWireJunction> buildEntranceFanOut(Design d, EnterWireJunction entrance) {
+        String tileName = entrance.getTileName();
+        TileTypeIndex index = getTileTypeIndex(d, tileName);
 
-                if (footprint.contains(nextNodeName))
-                    continue;
+        int tileSlot = FabricGraph.getTileSlot(tileName);
 
-                if (dir != null && dir!= WireDirection.SELF && wireLength != 0 && !RouteUtil.isClkNode(nextNodeName)) {
-                    results.add(new FanOutBundle(pip.getStartWireName(), trav.getDepth()));
-                }
-                if (RouteUtil.isNodeBuffer(d, tileName, nextNodeName))
-                    queue.add(new NodeDepthPair(nextNodeName, trav.getDepth() + 1));
+        TileFanOut<ExitWireJunction> fanOut = new TileFanOut<>();
+        for (FanOutBundle bundle : getRawEntranceFanOut(index, entrance.getWireName())) {
+            if (!isExitHop(d, tileName, tileSlot, index, bundle.getWireIndex()))
+                continue;
 
-                footprint.add(nextNodeName);
-            }
+            ExitWireJunction exit = new ExitWireJunction(d, tileName, index.getWireName(bundle.getWireIndex()));
+            exit.setTilePathCost(bundle.getPathCost());
+            fanOut.add(exit, bundle);
         }
+        return fanOut.seal();
+    }
 
-        synchronized (exitFanOutCache) {
-            exitFanOutCache.put(exitWireName, results);
-        }
+    private static List<FanOutBundle> getRawExitFanOut(TileTypeIndex index, String exitWireName) {
+        Map<Integer, List<FanOutBundle>> typeCache = exitFanOutCache.computeIfAbsent(index.getTileType(),
+                k -> new ConcurrentHashMap<>());
+        return typeCache.computeIfAbsent(index.getWireIndex(exitWireName),
+                k -> searchRawFanOut(index, k, false));
+    }
+
+    private static List<FanOutBundle> getRawEntranceFanOut(TileTypeIndex index, String entranceWireName) {
+        Map<Integer, List<FanOutBundle>> typeCache = entranceFanOutCache.computeIfAbsent(index.getTileType(),
+                k -> new ConcurrentHashMap<>());
+        return typeCache.computeIfAbsent(index.getWireIndex(entranceWireName),
+                k -> searchRawFanOut(index, k, true));
     }
 
     /*
-     * BFS search for all exiting wires that can be routed from the entrance junction
-     *   Results are cached in entranceFanOutCache, replacing previous cache if there are any
+     * BFS search over the tile type's PIP graph for all wires reachable to/from the base wire, ignoring locks
+     *   Searches forwards (towards exits) if isForward, otherwise backwards (towards entrances)
+     *   Every bundle records the buffers it was reached through, so that locks can be masked in per tile afterwards
      */
-    private static void updateEntranceFanOut(Design d, String tileName, String entranceWireName) {
+    private static List<FanOutBundle> searchRawFanOut(TileTypeIndex index, int baseWire, boolean isForward) {
 
-        Set<FanOutBundle> results = new LinkedHashSet<>();
+        List<FanOutBundle> results = new ArrayList<>();
+        if (baseWire < 0)
+            return Collections.unmodifiableList(results);
 
         Queue<NodeDepthPair> queue = new LinkedList<>();
-        queue.add(new NodeDepthPair(tileName + "/" + entranceWireName));
+        queue.add(new NodeDepthPair(baseWire));
 
-        HashSet<String> footprint = new HashSet<>();
+        BitSet footprint = new BitSet(index.getWireCount());
+        HashMap<Integer, int[]> viaWiresMap = new HashMap<>();
+        viaWiresMap.put(baseWire, new int[0]);
 
         while (!queue.isEmpty()) {
             NodeDepthPair trav = queue.remove();
@@ -203,46 +315,107 @@ public class FabricBrowser {
             if (trav.getDepth() >= TILE_TRAVERSAL_MAX_DEPTH)
                 break;
 
-            for (PIP pip : getFwdPIPs(d, tileName, trav.getNodeName())) {
-                String nextNodeName = RouteUtil.getPIPNodeName(tileName, pip.getEndWireName());
+            int[] viaWires = viaWiresMap.get(trav.getWireIndex());
+            int[] pips = isForward ? index.getFwdPIPs(trav.getWireIndex()) : index.getBkwdPIPs(trav.getWireIndex());
 
-                WireDirection dir = RouteUtil.extractExitWireDirection(d, tileName, pip.getEndWireName());
-                int wireLength = RouteUtil.extractExitWireLength(d, tileName, pip.getEndWireName());
+            for (int pip : pips) {
+                int nextWire = isForward ? index.getPIPEndWire(pip) : index.getPIPStartWire(pip);
 
-                if (footprint.contains(nextNodeName))
+                if (footprint.get(nextWire))
                     continue;
 
-                if (dir != null && dir != WireDirection.SELF && wireLength != 0 && !RouteUtil.isClkNode(nextNodeName)) {
-                    results.add(new FanOutBundle(pip.getEndWireName(), trav.getDepth()));
+                if (!index.isClk(nextWire))
+                    results.add(new FanOutBundle(nextWire, trav.getDepth(), viaWires));
+
+                if (index.isBuffer(nextWire)) {
+                    int[] nextViaWires = Arrays.copyOf(viaWires, viaWires.length + 1);
+                    nextViaWires[viaWires.length] = nextWire;
+                    viaWiresMap.put(nextWire, nextViaWires);
+
+                    queue.add(new NodeDepthPair(nextWire, trav.getDepth() + 1));
                 }
-                if (RouteUtil.isNodeBuffer(d, tileName, nextNodeName))
-                    queue.add(new NodeDepthPair(nextNodeName, trav.getDepth() + 1));
 
-                footprint.add(nextNodeName);
+                footprint.set(nextWire);
             }
         }
 
-        synchronized (entranceFanOutCache) {
-            entranceFanOutCache.put(entranceWireName, results);
+        return Collections.unmodifiableList(results);
+    }
+
+    /*
+     * Hop checks go through the INT wire classification table, and only fall back to RapidWright off the fabric graph
+     */
+    private static boolean isEnterHop(Design d, String tileName, int tileSlot, TileTypeIndex index, int wireIndex) {
+        if (tileSlot != FabricGraph.NULL_NODE)
+            return FabricGraph.isEnterHop(FabricGraph.getNodeId(tileSlot, wireIndex));
+
+        return RouteUtil.traceEnterWireGeometry(d, tileName, index.getWireName(wireIndex)).isHop();
+    }
+
+    private static boolean isExitHop(Design d, String tileName, int tileSlot, TileTypeIndex index, int wireIndex) {
+        if (tileSlot != FabricGraph.NULL_NODE)
+            return FabricGraph.isExitHop(FabricGraph.getNodeId(tileSlot, wireIndex));
+
+        return RouteUtil.traceExitWireGeometry(d, tileName, index.getWireName(wireIndex)).isHop();
+    }
+
+    /*
+     * True if any buffer the bundle was reached through is locked on the tile
+     *   The lock-aware BFS may then reach the wire through another buffer, or not at all
+     */
+    private static boolean isBlocked(int tileSlot, FanOutBundle bundle) {
+        for (int viaWire : bundle.getViaWires()) {
+            if (RouteForge.isLocked(FabricGraph.getNodeId(tileSlot, viaWire)))
+                return true;
         }
+        return false;
     }
 
     /*
-     * Conduct BFS for all entrances to exit junction independent of fan-out caches
-     *   Takes into consideration the router global footprint and any locked nodes
+     * Find all entrances to exit junction, taking into consideration the router global footprint and any locked nodes
+     *   Served from the fan-out cache with locks masked out, unless a locked buffer forces a full BFS of the tile
      */
     public static Set<EnterWireJunction> findReachableEntrances(Design d, ExitWireJunction exit) {
         return findReachableEntrances(d, TILE_TRAVERSAL_MAX_DEPTH, exit);
     }
 
     public static Set<EnterWireJunction> findReachableEntrances(Design d, int maxDepth, ExitWireJunction exit) {
+        if (maxDepth > TILE_TRAVERSAL_MAX_DEPTH || exit.getNodeId() == FabricGraph.NULL_NODE)
+            return searchReachableEntrances(d, maxDepth, exit);
+
+        TileFanOut<EnterWireJunction> fanOut = getExitTileFanOut(d, exit);
+        int tileSlot = FabricGraph.getTileSlot(exit.getNodeId());
+
+        Set<EnterWireJunction> results = new LinkedHashSet<>();
+        for (int i = 0; i < fanOut.size(); i++) {
+            FanOutBundle bundle = fanOut.getBundle(i);
+            if (bundle.getPathCost() >= maxDepth)
+                continue;
+
+            if (isBlocked(tileSlot, bundle))
+                return searchReachableEntrances(d, maxDepth, exit);
+            if (RouteForge.isLocked(FabricGraph.getNodeId(tileSlot, bundle.getWireIndex())))
+                continue;
+
+            results.add(fanOut.getJunction(i));
+        }
+
+        return results;
+    }
+
+    /*
+     * Lock-aware BFS of the tile, for when the fan-out cache can't answer the query
+     */
+    private static Set<EnterWireJunction> searchReachableEntrances(Design d, int maxDepth, ExitWireJunction exit) {
         Set<EnterWireJunction> results = new LinkedHashSet<>();
         String tileName = exit.getTileName();
+        int tileSlot = FabricGraph.getTileSlot(tileName);
+        TileTypeIndex index = getTileTypeIndex(d, tileName);
 
         Queue<NodeDepthPair> queue = new LinkedList<>();
-        queue.add(new NodeDepthPair(exit.getNodeName()));
+        queue.add(new NodeDepthPair(index.getWireIndex(exit.getWireName())));
 
-        HashSet<String> footprint = new HashSet<>();
+        BitSet footprint = new BitSet(index.getWireCount());
 
         while (!queue.isEmpty()) {
             NodeDepthPair trav = queue.remove();
@@ -250,24 +423,21 @@ public class FabricBrowser {
             if (trav.getDepth() >= maxDepth)
                 break;
 
-            for (PIP pip : getBkwdPIPs(d, exit.getTileName(), trav.getNodeName())) {
-                String nextNodeName = RouteUtil.getPIPNodeName(tileName, pip.getStartWireName());
-
-                WireDirection dir = RouteUtil.extractEnterWireDirection(d, tileName, pip.getStartWireName());
-                int wireLength = RouteUtil.extractEnterWireLength(d, tileName, pip.getStartWireName());
+            for (int pip : index.getBkwdPIPs(trav.getWireIndex())) {
+                int nextWire = index.getPIPStartWire(pip);
 
-                if (footprint.contains(nextNodeName) || RouteForge.isLocked(nextNodeName))
+                if (footprint.get(nextWire) || RouteForge.isLocked(FabricGraph.getNodeId(tileSlot, nextWire)))
                     continue;
 
-                if (dir != null && dir != WireDirection.SELF && wireLength != 0 && !RouteUtil.isClkNode(nextNodeName)) {
-                    EnterWireJunction entrance = new EnterWireJunction(d, tileName, pip.getStartWireName());
+                if (!index.isClk(nextWire) && isEnterHop(d, tileName, tileSlot, index, nextWire)) {
+                    EnterWireJunction entrance = new EnterWireJunction(d, tileName, index.getWireName(nextWire));
                     entrance.setTilePathCost(trav.getDepth());
                     results.add(entrance);
                 }
-                if (RouteUtil.isNodeBuffer(d, tileName, nextNodeName))
-                    queue.add(new NodeDepthPair(nextNodeName, trav.getDepth() + 1));
+                if (index.isBuffer(nextWire))
+                    queue.add(new NodeDepthPair(nextWire, trav.getDepth() + 1));
 
-                footprint.add(nextNodeName);
+                footprint.set(nextWire);
             }
         }
 
@@ -275,21 +445,50 @@ public class FabricBrowser {
     }
 
     /*
-     * Conduct BFS for all exits from entrance junction independent of fan-out caches
-     *   Takes into consideration the router global footprint and any locked nodes
+     * Find all exits from entrance junction, taking into consideration the router global footprint and any locked nodes
+     *   Served from the fan-out cache with locks masked out, unless a locked buffer forces a full BFS of the tile
      */
     public static Set<ExitWireJunction> findReachableExits(Design d, EnterWireJunction entrance) {
         return findReachableExits(d, TILE_TRAVERSAL_MAX_DEPTH, entrance);
     }
 
     public static Set<ExitWireJunction> findReachableExits(Design d, int maxDepth, EnterWireJunction entrance) {
+        if (maxDepth > TILE_TRAVERSAL_MAX_DEPTH || entrance.getNodeId() == FabricGraph.NULL_NODE)
+            return searchReachableExits(d, maxDepth, entrance);
+
+        TileFanOut<ExitWireJunction> fanOut = getEntranceTileFanOut(d, entrance);
+        int tileSlot = FabricGraph.getTileSlot(entrance.getNodeId());
+
+        Set<ExitWireJunction> results = new LinkedHashSet<>();
+        for (int i = 0; i < fanOut.size(); i++) {
+            FanOutBundle bundle = fanOut.getBundle(i);
+            if (bundle.getPathCost() >= maxDepth)
+                continue;
+
+            if (isBlocked(tileSlot, bundle))
+                return searchReachableExits(d, maxDepth, entrance);
+            if (RouteForge.isLocked(FabricGraph.getNodeId(tileSlot, bundle.getWireIndex())))
+                continue;
+
+            results.add(fanOut.getJunction(i));
+        }
+
+        return results;
+    }
+
+    /*
+     * Lock-aware BFS of the tile, for when the fan-out cache can't answer the query
+     */
+    private static Set<ExitWireJunction> searchReachableExits(Design d, int maxDepth, EnterWireJunction entrance) {
         Set<ExitWireJunction> results = new LinkedHashSet<>();
         String tileName = entrance.getTileName();
+        int tileSlot = FabricGraph.getTileSlot(tileName);
+        TileTypeIndex index = getTileTypeIndex(d, tileName);
 
         Queue<NodeDepthPair> queue = new LinkedList<>();
-        queue.add(new NodeDepthPair(entrance.getNodeName()));
+        queue.add(new NodeDepthPair(index.getWireIndex(entrance.getWireName())));
 
-        HashSet<String> footprint = new HashSet<>();
+        BitSet footprint = new BitSet(index.getWireCount());
 
         while (!queue.isEmpty()) {
             NodeDepthPair trav = queue.remove();
@@ -297,33 +496,108 @@ public class FabricBrowser {
             if (trav.getDepth() >= maxDepth)
                 continue;
 
-            for (PIP pip : getFwdPIPs(d, tileName, trav.getNodeName())) {
-                String nextNodeName = RouteUtil.getPIPNodeName(tileName, pip.getEndWireName());
-
-                WireDirection dir = RouteUtil.extractExitWireDirection(d, tileName, pip.getEndWireName());
-                int wireLength = RouteUtil.extractExitWireLength(d, tileName, pip.getEndWireName());
+            for (int pip : index.getFwdPIPs(trav.getWireIndex())) {
+                int nextWire = index.getPIPEndWire(pip);
 
-                if (footprint.contains(nextNodeName) || RouteForge.isLocked(nextNodeName))
+                if (footprint.get(nextWire) || RouteForge.isLocked(FabricGraph.getNodeId(tileSlot, nextWire)))
                     continue;
 
-                if (dir != null && dir != WireDirection.SELF && wireLength != 0 && !RouteUtil.isClkNode(nextNodeName)) {
-                    ExitWireJunction exit = new ExitWireJunction(d, tileName, pip.getEndWireName());
+                if (!index.isClk(nextWire) && isExitHop(d, tileName, tileSlot, index, nextWire)) {
+                    ExitWireJunction exit = new ExitWireJunction(d, tileName, index.getWireName(nextWire));
                     exit.setTilePathCost(trav.getDepth());
                     results.add(exit);
                 }
-                if (RouteUtil.isNodeBuffer(d, tileName, nextNodeName))
-                    queue.add(new NodeDepthPair(nextNodeName, trav.getDepth() + 1));
+                if (index.isBuffer(nextWire))
+                    queue.add(new NodeDepthPair(nextWire, trav.getDepth() + 1));
 
-                footprint.add(nextNodeName);
+                footprint.set(nextWire);
             }
         }
 
         return results;
     }
 
+    private static long getTilePathKey(int enterWire, int exitWire, int maxDepth) {
+        return ((long) enterWire << 40) | ((long) exitWire << 16) | maxDepth;
+    }
+
+    private static List<int[]> getRawTilePaths(TileTypeIndex index, int enterWire, int exitWire, int maxDepth) {
+        return tilePathCache.computeIfAbsent(index.getTileType(), k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(getTilePathKey(enterWire, exitWire, maxDepth),
+                        k -> searchRawTilePaths(index, enterWire, exitWire, maxDepth));
+    }
+
+    /*
+     * Lock-free BFS for every path through buffers from the entering wire to the exiting wire, within a tile type
+     *   Paths are local wire indices, inclusive of the entering and exiting wires, in order of lowest-to-highest cost
+     */
+    private static List<int[]> searchRawTilePaths(TileTypeIndex index, int enterWire, int exitWire, int maxDepth) {
+        ArrayList<int[]> results = new ArrayList<>();
+
+        Queue<int[]> queue = new ArrayDeque<>();
+        queue.add(new int[] {enterWire});
+
+        while (!queue.isEmpty()) {
+            int[] trav = queue.remove();
+
+            if (trav.length >= maxDepth + 1)
+                break;
+
+            for (int pip : index.getFwdPIPs(trav[trav.length - 1])) {
+                int nextWire = index.getPIPEndWire(pip);
+
+                if (nextWire == exitWire) {
+                    int[] path = Arrays.copyOf(trav, trav.length + 1);
+                    path[trav.length] = exitWire;
+                    results.add(path);
+                }
+                else if (index.isBuffer(nextWire)) {
+
+                    // To prevent cycles in buffer traversal, don't queue previously traversed buffers
+                    boolean isTraversed = false;
+                    for (int wire : trav) {
+                        if (wire == nextWire) {
+                            isTraversed = true;
+                            break;
+                        }
+                    }
+                    if (isTraversed)
+                        continue;
+
+                    int[] travCopy = Arrays.copyOf(trav, trav.length + 1);
+                    travCopy[trav.length] = nextWire;
+                    queue.add(travCopy);
+                }
+            }
+        }
+
+        return Collections.unmodifiableList(results);
+    }
+
+    /*
+     * Whether any buffer between the entering and exiting wires of a cached tile path is locked or banned
+     */
+    private static boolean isBlocked(int tileSlot, int[] wirePath, Set<Integer> banList) {
+        for (int i = 1; i < wirePath.length - 1; i++) {
+            int nodeId = FabricGraph.getNodeId(tileSlot, wirePath[i]);
+            if (RouteForge.isLocked(nodeId) || (banList != null && banList.contains(nodeId)))
+                return true;
+        }
+        return false;
+    }
+
+    private static TilePath newTilePath(int tileSlot, int[] wirePath, EnterWireJunction entrance,
+                                        ExitWireJunction exit) {
+        int[] nodePath = new int[wirePath.length];
+        for (int i = 0; i < wirePath.length; i++)
+            nodePath[i] = FabricGraph.getNodeId(tileSlot, wirePath[i]);
+        return new TilePath(entrance, exit, nodePath, wirePath.length);
+    }
+
     /*
      * BFS search for all possible INT tile paths from entrance to exit, that are sufficiently fast
      *   Returned list is in order of lowest-to-highest cost
+     *   Tile paths only exist between wires of the fabric graph, so wires outside of it have none
      */
     public static ArrayList<TilePath> findTilePaths(Design d, EnterWireJunction entrance,
                                                     ExitWireJunction exit) {
@@ -339,35 +613,16 @@ public class FabricBrowser {
             return results;
 
         String tileName = entrance.getTileName();
+        int tileSlot = FabricGraph.getTileSlot(tileName);
+        if (tileSlot == FabricGraph.NULL_NODE || entrance.getNodeId() < 0 || exit.getNodeId() < 0)
+            return results;
 
-        Queue<TilePathTracer> queue = new LinkedList<>();
-        queue.add(new TilePathTracer(entrance));
-
-        while (!queue.isEmpty()) {
-            TilePathTracer trav = queue.remove();
-
-            if (trav.getLength() >= maxDepth + 1)
-                break;
-
-            for (PIP pip : getFwdPIPs(d, tileName, trav.getSearchHead())) {
-                String nextNodeName = RouteUtil.getPIPNodeName(tileName, pip.getEndWireName());
-
-                if (nextNodeName.equals(exit.getNodeName())) {
-                    trav.setExit(exit);
-                    results.add(new TilePath(trav));
-                }
-                else if (RouteUtil.isNodeBuffer(d, tileName, nextNodeName)) {
-
-                    if (RouteForge.isLocked(nextNodeName))
-                        continue;
-
-                    TilePathTracer travCopy = new TilePathTracer(trav);
+        TileTypeIndex index = getTileTypeIndex(d, tileName);
 
-                    // To prevent cycles in buffer traversal, don't queue previously traversed buffers
-                    if (travCopy.addNode(nextNodeName))
-                        queue.add(travCopy);
-                }
-            }
+        for (int[] wirePath : getRawTilePaths(index, FabricGraph.getWireIndex(entrance.getNodeId()),
+                FabricGraph.getWireIndex(exit.getNodeId()), maxDepth)) {
+            if (!isBlocked(tileSlot, wirePath, null))
+                results.add(newTilePath(tileSlot, wirePath, entrance, exit));
         }
 
         return results;
@@ -381,8 +636,10 @@ public class FabricBrowser {
             results.add(new ArrayList<>());
 
         String tileName = exit.getTileName();
+        int tileSlot = FabricGraph.getTileSlot(tileName);
+        TileTypeIndex index = getTileTypeIndex(d, tileName);
 
-        Queue<TilePathTracer> queue = new LinkedList<>();
+        Queue<TilePathTracer> queue = new ArrayDeque<>();
         queue.add(new TilePathTracer(exit));
 
         while (!queue.isEmpty()) {
@@ -391,18 +648,16 @@ public class FabricBrowser {
             if (trav.getLength() >= maxDepth + 1)
                 break;
 
-            for (PIP pip : getBkwdPIPs(d, tileName, trav.getSearchHead())) {
-                String nextNodeName = RouteUtil.getPIPNodeName(tileName, pip.getStartWireName());
+            for (int pip : index.getBkwdPIPs(FabricGraph.getWireIndex(trav.getSearchHead()))) {
+                int nextWire = index.getPIPStartWire(pip);
+                int nextNodeId = FabricGraph.getNodeId(tileSlot, nextWire);
 
                 boolean isExit = false;
                 for (int i = 0; i < entrances.size(); i++) {
                     EnterWireJunction entrance = entrances.get(i);
-                    if (entrance.getNodeName().equals(nextNodeName)) {
-                        TilePathTracer solution = new TilePathTracer(trav);
-                        solution.setEntrance(entrance);
-
+                    if (entrance.getNodeId() == nextNodeId) {
                         isExit = true;
-                        results.get(i).add(new TilePath(solution));
+                        results.get(i).add(new TilePath(trav.setEntrance(entrance)));
                         break;
                     }
                 }
@@ -410,14 +665,13 @@ public class FabricBrowser {
                 if (isExit)
                     continue;
 
-                if (RouteUtil.isNodeBuffer(d, tileName, nextNodeName)) {
+                if (index.isBuffer(nextWire)) {
 
-                    if (RouteForge.isLocked(nextNodeName))
+                    if (RouteForge.isLocked(nextNodeId))
                         continue;
 
-                    TilePathTracer travCopy = new TilePathTracer(trav);
-
-                    if (travCopy.addNode(nextNodeName))
+                    TilePathTracer travCopy = trav.addNode(nextNodeId);
+                    if (travCopy != null)
                         queue.add(travCopy);
                 }
             }
@@ -426,56 +680,33 @@ public class FabricBrowser {
         return results;
     }
 
+    /*
+     * Cheapest open INT tile path from entrance to exit, or null if there is none, e.g. for wires outside of the
+     *   fabric graph
+     */
     public static TilePath findClosestTilePath(Design d, EnterWireJunction entrance,
-                                               ExitWireJunction exit, Set<String> banList) {
+                                               ExitWireJunction exit, Set<Integer> banList) {
         return findClosestTilePath(d, TILE_TRAVERSAL_MAX_DEPTH, entrance, exit, banList);
     }
 
     public static TilePath findClosestTilePath(Design d, int maxDepth, EnterWireJunction entrance,
-                                               ExitWireJunction exit, Set<String> banList) {
+                                               ExitWireJunction exit, Set<Integer> banList) {
         // Not applicable unless entrance and exit are on the same INT tile.
         if (!entrance.getTileName().equals(exit.getTileName()))
             return null;
 
         String tileName = entrance.getTileName();
+        int tileSlot = FabricGraph.getTileSlot(tileName);
+        if (tileSlot == FabricGraph.NULL_NODE || entrance.getNodeId() < 0 || exit.getNodeId() < 0)
+            return null;
 
-        Queue<TilePathTracer> queue = new LinkedList<>();
-        queue.add(new TilePathTracer(entrance));
-
-        HashSet<String> footprint = new HashSet<>();
-
-        while (!queue.isEmpty()) {
-            TilePathTracer trav = queue.remove();
-            if (trav.getLength() >= maxDepth + 1)
-                break;
-
-            for (PIP pip : getFwdPIPs(d, tileName, trav.getSearchHead())) {
-                String nextNodeName = RouteUtil.getPIPNodeName(tileName, pip.getEndWireName());
-
-                if (nextNodeName.equals(exit.getNodeName())) {
-                    trav.setExit(exit);
-                    return new TilePath(trav);
-                }
-                else if (RouteUtil.isNodeBuffer(d, tileName, nextNodeName)) {
-
-                    if (RouteForge.isLocked(nextNodeName))
-                        continue;
-
-                    if (footprint.contains(nextNodeName))
-                        continue;
-
-                    if (banList.contains(nextNodeName))
-                        continue;
-
-                    TilePathTracer travCopy = new TilePathTracer(trav);
+        TileTypeIndex index = getTileTypeIndex(d, tileName);
 
-                    // To prevent cycles in buffer traversal, don't queue previously traversed buffers
-                    if (travCopy.addNode(nextNodeName)) {
-                        queue.add(travCopy);
-                        footprint.add(nextNodeName);
-                    }
-                }
-            }
+        // Cached paths are in order of length, so the first open one is the closest
+        for (int[] wirePath : getRawTilePaths(index, FabricGraph.getWireIndex(entrance.getNodeId()),
+                FabricGraph.getWireIndex(exit.getNodeId()), maxDepth)) {
+            if (!isBlocked(tileSlot, wirePath, banList))
+                return newTilePath(tileSlot, wirePath, entrance, exit);
         }
 
         return null;
@@ -0,0 +1,225 @@
+package com.uwaterloo.watcag.router.browser;
+
+import com.uwaterloo.watcag.config.ResourcesManager;
+import com.uwaterloo.watcag.util.RouterLog;
+import com.xilinx.rapidwright.design.Design;
+import com.xilinx.rapidwright.device.Device;
+import com.xilinx.rapidwright.device.PIP;
+import com.xilinx.rapidwright.device.Tile;
+import com.xilinx.rapidwright.device.TileTypeEnum;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Map;
+
+public class FabricCache {
+
+    /*
+     * Binary on-disk cache of the derived fabric graph, one file per Xilinx part
+     *   Holds the INT tile slots of FabricGraph, and the PIP adjacency and wire classes of every indexed tile type
+     *   Files are memory-mapped on load; a file with a different magic, version or device is ignored and rewritten
+     *   PIPs are cached as their positions in Tile.getPIPs(), which a RapidWright or device data update may reorder,
+     *   so each tile type is also checked against the PIPs of its reference tile on load
+     */
+
+    private static final int MAGIC = 0x52524643;
+    private static final int VERSION = 4;
+
+    // Number of PIPs, spread over each tile type, whose wires are compared with the device on load
+    private static final int PIP_SAMPLE_COUNT = 64;
+
+    private static final String FILE_EXTENSION = ".fabric";
+
+    private static String getCacheFileName(Design d) {
+        return ResourcesManager.FABRIC_CACHE_DIR + d.getPartName() + FILE_EXTENSION;
+    }
+
+    /*
+     * Restores FabricGraph and the tile type indexes of FabricBrowser from the part's cache file
+     *   Returns false if there is no usable cache file
+     */
+    static boolean load(Design d) {
+        File cacheFile = new File(getCacheFileName(d));
+        if (!cacheFile.isFile())
+            return false;
+
+        Device device = d.getDevice();
+
+        try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || !readString(buffer).equals(device.getName())) {
+                RouterLog.log("Fabric cache <" + cacheFile.getPath() + "> is stale; rebuilding.", RouterLog.Level.INFO);
+                return false;
+            }
+
+            int tileTypeCount = buffer.getInt();
+            for (int i = 0; i < tileTypeCount; i++) {
+                TileTypeEnum tileType = TileTypeEnum.valueOf(readString(buffer));
+                String refTileName = readString(buffer);
+
+                int wireCount = buffer.getInt();
+                ArrayList<String> wireNames = new ArrayList<>(wireCount);
+                for (int w = 0; w < wireCount; w++)
+                    wireNames.add(readString(buffer));
+
+                int[] pipStartWires = readIntArray(buffer);
+                int[] pipEndWires = readIntArray(buffer);
+                int[] wireClasses = readIntArray(buffer);
+                int[] enterOtherWires = readIntArray(buffer);
+                int[] exitOtherWires = readIntArray(buffer);
+
+                if (!matchesDevice(device, tileType, refTileName, wireNames, pipStartWires, pipEndWires)) {
+                    RouterLog.log("Fabric cache <" + cacheFile.getPath() + "> doesn't match the PIPs of <"
+                            + refTileName + ">; rebuilding.", RouterLog.Level.INFO);
+                    FabricBrowser.tileTypeIndexCache.clear();
+                    return false;
+                }
+
+                FabricBrowser.tileTypeIndexCache.put(tileType, new TileTypeIndex(tileType, refTileName, wireNames,
+                        pipStartWires, pipEndWires, wireClasses, enterOtherWires, exitOtherWires));
+            }
+
+            int tileCount = buffer.getInt();
+            ArrayList<Tile> intTiles = new ArrayList<>(tileCount);
+            for (int slot = 0; slot < tileCount; slot++) {
+                Tile tile = device.getTile(readString(buffer));
+                if (tile == null) {
+                    RouterLog.log("Fabric cache <" + cacheFile.getPath() + "> is stale; rebuilding.",
+                            RouterLog.Level.INFO);
+                    FabricBrowser.tileTypeIndexCache.clear();
+                    return false;
+                }
+                intTiles.add(tile);
+            }
+
+            FabricGraph.setIntTiles(d, intTiles);
+
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            RouterLog.log("Fabric cache <" + cacheFile.getPath() + "> could not be read; rebuilding.",
+                    RouterLog.Level.WARNING);
+            FabricBrowser.tileTypeIndexCache.clear();
+            return false;
+        }
+
+        RouterLog.log("Loaded fabric cache <" + cacheFile.getPath() + ">.", RouterLog.Level.INFO);
+        return true;
+    }
+
+    /*
+     * Writes the current FabricGraph and tile type indexes to the part's cache file
+     *   Failing to write the cache is not fatal; the next run simply enumerates the device again
+     */
+    static void save(Design d) {
+        File cacheFile = new File(getCacheFileName(d));
+        File tempFile = new File(cacheFile.getPath() + ".tmp");
+
+        try {
+            Files.createDirectories(Paths.get(ResourcesManager.FABRIC_CACHE_DIR));
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writeString(out, d.getDevice().getName());
+
+                out.writeInt(FabricBrowser.tileTypeIndexCache.size());
+                for (Map.Entry<TileTypeEnum, TileTypeIndex> entry : FabricBrowser.tileTypeIndexCache.entrySet()) {
+                    TileTypeIndex index = entry.getValue();
+                    writeString(out, entry.getKey().name());
+                    writeString(out, index.getRefTileName());
+
+                    out.writeInt(index.getWireCount());
+                    for (int w = 0; w < index.getWireCount(); w++)
+                        writeString(out, index.getWireName(w));
+
+                    out.writeInt(index.getPIPCount());
+                    for (int p = 0; p < index.getPIPCount(); p++)
+                        out.writeInt(index.getPIPStartWire(p));
+                    out.writeInt(index.getPIPCount());
+                    for (int p = 0; p < index.getPIPCount(); p++)
+                        out.writeInt(index.getPIPEndWire(p));
+
+                    out.writeInt(index.getWireCount());
+                    for (int w = 0; w < index.getWireCount(); w++)
+                        out.writeInt(index.getWireClass(w));
+                    writeIntArray(out, index.getEnterOtherWires());
+                    writeIntArray(out, index.getExitOtherWires());
+                }
+
+                out.writeInt(FabricGraph.getTileCount());
+                for (int slot = 0; slot < FabricGraph.getTileCount(); slot++)
+                    writeString(out, FabricGraph.getSlotTile(slot).getName());
+            }
+
+            Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        } catch (IOException e) {
+            RouterLog.log("Fabric cache <" + cacheFile.getPath() + "> could not be written.", RouterLog.Level.WARNING);
+            tempFile.delete();
+            return;
+        }
+
+        RouterLog.log("Saved fabric cache <" + cacheFile.getPath() + ">.", RouterLog.Level.INFO);
+    }
+
+    /*
+     * Whether the cached PIPs of a tile type are still those of its reference tile, by count and by the wires of
+     *   PIPs spread over the whole list
+     */
+    private static boolean matchesDevice(Device device, TileTypeEnum tileType, String refTileName,
+                                         ArrayList<String> wireNames, int[] pipStartWires, int[] pipEndWires) {
+        Tile refTile = device.getTile(refTileName);
+        if (refTile == null || refTile.getTileTypeEnum() != tileType)
+            return false;
+
+        ArrayList<PIP> pips = refTile.getPIPs();
+        if (pips.size() != pipStartWires.length || pips.size() != pipEndWires.length)
+            return false;
+
+        int step = Math.max(pips.size() / PIP_SAMPLE_COUNT, 1);
+        for (int p = 0; p < pips.size(); p += step) {
+            if (!isSamePIP(pips.get(p), wireNames, pipStartWires[p], pipEndWires[p]))
+                return false;
+        }
+        return pips.isEmpty()
+                || isSamePIP(pips.get(pips.size() - 1), wireNames, pipStartWires[pips.size() - 1],
+                pipEndWires[pips.size() - 1]);
+    }
+
+    private static boolean isSamePIP(PIP pip, ArrayList<String> wireNames, int startWire, int endWire) {
+        if (startWire < 0 || startWire >= wireNames.size() || endWire < 0 || endWire >= wireNames.size())
+            return false;
+        return pip.getStartWireName().equals(wireNames.get(startWire))
+                && pip.getEndWireName().equals(wireNames.get(endWire));
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeIntArray(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values)
+            out.writeInt(value);
+    }
+
+    private static String readString(MappedByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int[] readIntArray(MappedByteBuffer buffer) {
+        int[] values = new int[buffer.getInt()];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + values.length * Integer.BYTES);
+        return values;
+    }
+}
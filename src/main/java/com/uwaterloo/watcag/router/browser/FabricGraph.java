@@ -0,0 +1,317 @@
+package com.uwaterloo.watcag.router.browser;
+
+import com.uwaterloo.watcag.DesignFailureException;
+import com.uwaterloo.watcag.router.elements.WireDirection;
+import com.uwaterloo.watcag.router.elements.WireGeometry;
+import com.uwaterloo.watcag.util.RouteUtil;
+import com.xilinx.rapidwright.design.Design;
+import com.xilinx.rapidwright.device.Device;
+import com.xilinx.rapidwright.device.Tile;
+import com.xilinx.rapidwright.device.TileTypeEnum;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+public class FabricGraph {
+
+    /*
+     * Dense integer numbering of every routable INT tile wire on the device
+     *   Node ID = INT tile slot * wires per INT tile + local wire index within the INT tile type
+     *   Tile slots are assigned in device order, and can be looked up by INT tile coordinates
+     */
+
+    public static final int NULL_NODE = -1;
+
+    private static Device device = null;
+    private static TileTypeIndex intTileIndex;
+    private static int wiresPerTile;
+
+    private static ArrayList<Tile> intTiles;
+    private static HashMap<String, Integer> tileSlotMap;
+
+    private static int maxTileX;
+    private static int maxTileY;
+    private static int[][] tileSlotGrid;
+
+    private static int maxHWireLength;
+    private static int maxVWireLength;
+
+    /*
+     * Enumerate INT tiles of the design's device; no-op if the device is already enumerated
+     *   Loads the fabric cache of the part if there is one, otherwise enumerates the device and saves a new cache
+     */
+    public static synchronized void initialize(Design d) {
+        if (device == d.getDevice())
+            return;
+
+        // Switching devices, e.g. between designs of one toolkit session
+        if (device != null) {
+            FabricBrowser.clearDeviceCaches();
+            device = null;
+        }
+
+        if (FabricCache.load(d))
+            return;
+
+        ArrayList<Tile> tiles = new ArrayList<>();
+        for (Tile[] row : d.getDevice().getTiles()) {
+            for (Tile tile : row) {
+                if (tile != null && tile.getTileTypeEnum() == TileTypeEnum.INT)
+                    tiles.add(tile);
+            }
+        }
+
+        setIntTiles(d, tiles);
+        FabricCache.save(d);
+    }
+
+    /*
+     * Assign tile slots in list order
+     */
+    static void setIntTiles(Design d, ArrayList<Tile> tiles) {
+        if (tiles.isEmpty())
+            throw new DesignFailureException("No INT tiles found on device <" + d.getDevice().getName() + ">.");
+
+        HashMap<String, Integer> slotMap = new HashMap<>();
+        int maxX = 0;
+        int maxY = 0;
+
+        for (int slot = 0; slot < tiles.size(); slot++) {
+            Tile tile = tiles.get(slot);
+            slotMap.put(tile.getName(), slot);
+
+            maxX = Math.max(maxX, tile.getTileXCoordinate());
+            maxY = Math.max(maxY, tile.getTileYCoordinate());
+        }
+
+        int[][] slotGrid = new int[maxX + 1][maxY + 1];
+        for (int[] column : slotGrid)
+            Arrays.fill(column, NULL_NODE);
+        for (int slot = 0; slot < tiles.size(); slot++)
+            slotGrid[tiles.get(slot).getTileXCoordinate()][tiles.get(slot).getTileYCoordinate()] = slot;
+
+        intTileIndex = FabricBrowser.getTileTypeIndex(d, tiles.get(0).getName());
+        wiresPerTile = intTileIndex.getWireCount();
+
+        intTiles = tiles;
+        tileSlotMap = slotMap;
+        maxTileX = maxX;
+        maxTileY = maxY;
+        tileSlotGrid = slotGrid;
+
+        if (!intTileIndex.hasGeometry())
+            intTileIndex.classifyGeometry(d, getCenterTile());
+
+        maxHWireLength = 0;
+        maxVWireLength = 0;
+        for (int w = 0; w < wiresPerTile; w++) {
+            WireGeometry geometry = intTileIndex.getExitGeometry(w);
+            if (!geometry.isHop())
+                continue;
+            if (RouteUtil.isHorizontal(geometry.getDirection()))
+                maxHWireLength = Math.max(maxHWireLength, geometry.getLength());
+            else
+                maxVWireLength = Math.max(maxVWireLength, geometry.getLength());
+        }
+
+        if ((long) tiles.size() * wiresPerTile > Integer.MAX_VALUE)
+            throw new DesignFailureException("Device <" + d.getDevice().getName() + "> is too large for node IDs.");
+
+        device = d.getDevice();
+    }
+
+    /*
+     * INT tile closest to the center of the INT tile grid, used as the reference tile for wire geometry
+     */
+    private static Tile getCenterTile() {
+        int centerX = maxTileX / 2;
+        int centerY = maxTileY / 2;
+
+        Tile centerTile = intTiles.get(0);
+        int minDist = Integer.MAX_VALUE;
+        for (Tile tile : intTiles) {
+            int dist = Math.abs(tile.getTileXCoordinate() - centerX) + Math.abs(tile.getTileYCoordinate() - centerY);
+            if (dist < minDist) {
+                minDist = dist;
+                centerTile = tile;
+            }
+        }
+        return centerTile;
+    }
+
+    public static int getTileCount() {
+        if (intTiles == null)
+            return 0;
+        return intTiles.size();
+    }
+
+    public static Tile getSlotTile(int tileSlot) {
+        return intTiles.get(tileSlot);
+    }
+
+    public static int getNodeCount() {
+        if (intTiles == null)
+            return 0;
+        return intTiles.size() * wiresPerTile;
+    }
+
+    public static int getWiresPerTile() {
+        return wiresPerTile;
+    }
+
+    public static TileTypeIndex getIntTileIndex() {
+        return intTileIndex;
+    }
+
+    /*
+     * Length of the longest horizontal/vertical hop wire of the INT tile type
+     */
+    public static int getMaxWireLength(boolean isHorizontal) {
+        return isHorizontal ? maxHWireLength : maxVWireLength;
+    }
+
+    /*
+     * Returns NULL_NODE for non-INT tiles and wires that aren't attached to any INT PIP
+     */
+    public static int getTileSlot(String tileName) {
+        if (tileSlotMap == null)
+            return NULL_NODE;
+        Integer slot = tileSlotMap.get(tileName);
+        return slot == null ? NULL_NODE : slot;
+    }
+
+    public static int getTileSlot(int tileX, int tileY) {
+        if (tileX < 0 || tileY < 0 || tileX > maxTileX || tileY > maxTileY)
+            return NULL_NODE;
+        return tileSlotGrid[tileX][tileY];
+    }
+
+    public static int getNodeId(int tileSlot, int wireIndex) {
+        if (tileSlot < 0 || wireIndex < 0)
+            return NULL_NODE;
+        return tileSlot * wiresPerTile + wireIndex;
+    }
+
+    public static int getNodeId(String tileName, String wireName) {
+        if (wireName == null)
+            return NULL_NODE;
+        return getNodeId(getTileSlot(tileName), intTileIndex.getWireIndex(wireName));
+    }
+
+    public static int getNodeId(String nodeName) {
+        int split = nodeName.indexOf('/');
+        return getNodeId(nodeName.substring(0, split), nodeName.substring(split + 1));
+    }
+
+    /*
+     * ID of the same wire on the INT tile dx, dy away, or NULL_NODE if there is no such tile
+     */
+    public static int getOffsetNodeId(int nodeId, int dx, int dy) {
+        if (nodeId < 0)
+            return NULL_NODE;
+        Tile tile = getTile(nodeId);
+        return getNodeId(getTileSlot(tile.getTileXCoordinate() + dx, tile.getTileYCoordinate() + dy),
+                getWireIndex(nodeId));
+    }
+
+    public static int getTileSlot(int nodeId) {
+        return nodeId / wiresPerTile;
+    }
+
+    public static int getWireIndex(int nodeId) {
+        return nodeId % wiresPerTile;
+    }
+
+    public static Tile getTile(int nodeId) {
+        return intTiles.get(getTileSlot(nodeId));
+    }
+
+    public static String getTileName(int nodeId) {
+        return getTile(nodeId).getName();
+    }
+
+    public static String getWireName(int nodeId) {
+        return intTileIndex.getWireName(getWireIndex(nodeId));
+    }
+
+    /*
+     * Geometry of the node's wire on its own tile
+     *   Wires of the INT tile type only hop on tiles where the INT tile at the other end of the wire exists
+     */
+    public static WireGeometry getEnterGeometry(int nodeId) {
+        if (nodeId < 0)
+            return WireGeometry.NONE;
+        WireGeometry geometry = intTileIndex.getEnterGeometry(getWireIndex(nodeId));
+        if (geometry.isHop() && getHopTileSlot(nodeId, geometry.getDirection(), -geometry.getLength()) == NULL_NODE)
+            return WireGeometry.NONE;
+        return geometry;
+    }
+
+    public static WireGeometry getExitGeometry(int nodeId) {
+        if (nodeId < 0)
+            return WireGeometry.NONE;
+        WireGeometry geometry = intTileIndex.getExitGeometry(getWireIndex(nodeId));
+        if (geometry.isHop() && getHopTileSlot(nodeId, geometry.getDirection(), geometry.getLength()) == NULL_NODE)
+            return WireGeometry.NONE;
+        return geometry;
+    }
+
+    public static boolean isEnterHop(int nodeId) {
+        return getEnterGeometry(nodeId).isHop();
+    }
+
+    public static boolean isExitHop(int nodeId) {
+        return getExitGeometry(nodeId).isHop();
+    }
+
+    /*
+     * Node at the source end of the node's entering wire, or NULL_NODE if it is not in the fabric graph
+     */
+    public static int getEnterSrcNodeId(int nodeId) {
+        WireGeometry geometry = getEnterGeometry(nodeId);
+        if (geometry.getDirection() == null || geometry.getOtherWireName() == null)
+            return NULL_NODE;
+        return getNodeId(getHopTileSlot(nodeId, geometry.getDirection(), -geometry.getLength()),
+                intTileIndex.getWireIndex(geometry.getOtherWireName()));
+    }
+
+    /*
+     * Node at the destination end of the node's exiting wire, or NULL_NODE if it is not in the fabric graph
+     */
+    public static int getExitDestNodeId(int nodeId) {
+        WireGeometry geometry = getExitGeometry(nodeId);
+        if (geometry.getDirection() == null || geometry.getOtherWireName() == null)
+            return NULL_NODE;
+        return getNodeId(getHopTileSlot(nodeId, geometry.getDirection(), geometry.getLength()),
+                intTileIndex.getWireIndex(geometry.getOtherWireName()));
+    }
+
+    /*
+     * Slot of the INT tile that is length tiles away from the node's tile, in direction dir
+     */
+    private static int getHopTileSlot(int nodeId, WireDirection dir, int length) {
+        Tile tile = getTile(nodeId);
+        int x = tile.getTileXCoordinate();
+        int y = tile.getTileYCoordinate();
+
+        switch (dir) {
+            case NORTH:
+                return getTileSlot(x, y + length);
+            case SOUTH:
+                return getTileSlot(x, y - length);
+            case EAST:
+                return getTileSlot(x + length, y);
+            case WEST:
+                return getTileSlot(x - length, y);
+            default:
+                return getTileSlot(nodeId);
+        }
+    }
+
+    public static String getNodeName(int nodeId) {
+        if (nodeId < 0)
+            return null;
+        return getTileName(nodeId) + "/" + getWireName(nodeId);
+    }
+}
@@ -1,16 +1,32 @@
 package com.uwaterloo.watcag.router.browser;
 
+import com.uwaterloo.watcag.router.elements.WireDirection;
 import com.uwaterloo.watcag.router.elements.WireJunction;
 import com.uwaterloo.watcag.util.RouteUtil;
+import com.xilinx.rapidwright.device.Tile;
 
 public class JunctionsTracer {
 
     private static final int V_LONG_LINE_LENGTH = 12;
     private static final int H_LONG_LINE_LENGTH = 6;
 
+    private static final int ORTHOGONAL_TURN_COST = 8;
+    private static final int REVERSAL_COST = 2;
+
     private int depth;
     private int estimatedCost;
 
+    // Target INT tile of the search, if any, to estimate the remaining cost to
+    // Backward tracers search from the sink towards the source, so their parents are later hops of the route
+    private boolean hasTarget;
+    private boolean isBackward;
+    private int targetX;
+    private int targetY;
+
+    // Lower bound on the cost left to reach the target tile, and the fewest hops that can get there
+    private int remainingCost;
+    private int remainingHops;
+
     private WireJunction junction;
     private JunctionsTracer parent;
 
@@ -28,7 +44,13 @@ public class JunctionsTracer {
         this.junction = junction;
         this.parent = parent;
 
+        hasTarget = parent.hasTarget;
+        isBackward = parent.isBackward;
+        targetX = parent.targetX;
+        targetY = parent.targetY;
+
         readjustCost(junction);
+        estimateRemaining();
     }
 
     public int getDepth() {
@@ -39,6 +61,14 @@ public class JunctionsTracer {
         return estimatedCost;
     }
 
+    public int getRemainingCost() {
+        return remainingCost;
+    }
+
+    public int getRemainingHops() {
+        return remainingHops;
+    }
+
     private void readjustCost(WireJunction newJunction) {
         int delta = 0;
 
@@ -47,14 +77,50 @@ public class JunctionsTracer {
             delta += 4;
         // Punish reversals, although sometimes they are necessary
         if (RouteUtil.reverseDirection(newJunction.getDirection()).equals(parent.getJunction().getDirection()))
-            delta += 2;
+            delta += REVERSAL_COST;
             // Punish orthogonal turns, which are very slow
         else if (RouteUtil.isOrthogonal(newJunction.getDirection(), parent.getJunction().getDirection()))
-            delta += 8;
+            delta += ORTHOGONAL_TURN_COST;
 
         estimatedCost += delta;
     }
 
+    /*
+     * Admissible estimate of what is left to reach the target tile, given the penalties of readjustCost
+     *   Any path that still has to move along both axes, or along the axis orthogonal to the current wire,
+     *   takes at least one orthogonal turn. Moving against the current wire takes at least a reversal.
+     *   Hops are counted as if only the longest horizontal/vertical wires were used.
+     */
+    private void estimateRemaining() {
+        remainingCost = 0;
+        remainingHops = 0;
+
+        int nodeId = junction.getNodeId();
+        if (!hasTarget || nodeId == FabricGraph.NULL_NODE)
+            return;
+
+        Tile tile = FabricGraph.getTile(nodeId);
+        int dx = targetX - tile.getTileXCoordinate();
+        int dy = targetY - tile.getTileYCoordinate();
+
+        int maxHLength = Math.max(FabricGraph.getMaxWireLength(true), 1);
+        int maxVLength = Math.max(FabricGraph.getMaxWireLength(false), 1);
+        remainingHops = (Math.abs(dx) + maxHLength - 1) / maxHLength + (Math.abs(dy) + maxVLength - 1) / maxVLength;
+
+        // Going backwards, continuing against the wire's direction is straight ahead
+        WireDirection dir = isBackward ? RouteUtil.reverseDirection(junction.getDirection()) : junction.getDirection();
+        if (dx != 0 && dy != 0) {
+            remainingCost = ORTHOGONAL_TURN_COST;
+        }
+        else if (dx != 0 || dy != 0) {
+            WireDirection needed = dx != 0 ? RouteUtil.primaryHDirection(dx) : RouteUtil.primaryVDirection(dy);
+            if (RouteUtil.isOrthogonal(needed, dir))
+                remainingCost = ORTHOGONAL_TURN_COST;
+            else if (needed == RouteUtil.reverseDirection(dir))
+                remainingCost = REVERSAL_COST;
+        }
+    }
+
     public WireJunction getJunction() {
         return junction;
     }
@@ -66,4 +132,37 @@ public class JunctionsTracer {
     public static JunctionsTracer newHeadTracer(WireJunction head) {
         return new JunctionsTracer(head);
     }
+
+    public static JunctionsTracer newHeadTracer(WireJunction head, int targetX, int targetY) {
+        JunctionsTracer tracer = new JunctionsTracer(head);
+        tracer.hasTarget = true;
+        tracer.targetX = targetX;
+        tracer.targetY = targetY;
+        tracer.estimateRemaining();
+        return tracer;
+    }
+
+    public static JunctionsTracer newBackwardHeadTracer(WireJunction head, int targetX, int targetY) {
+        JunctionsTracer tracer = new JunctionsTracer(head);
+        tracer.hasTarget = true;
+        tracer.isBackward = true;
+        tracer.targetX = targetX;
+        tracer.targetY = targetY;
+        tracer.estimateRemaining();
+        return tracer;
+    }
+
+    public boolean isBackward() {
+        return isBackward;
+    }
+
+    /*
+     * Head of the tracer's chain, i.e. the source for forward tracers and the sink lead-in for backward tracers
+     */
+    public JunctionsTracer getHead() {
+        JunctionsTracer head = this;
+        while (head.getParent() != null)
+            head = head.getParent();
+        return head;
+    }
 }
@@ -2,95 +2,102 @@ package com.uwaterloo.watcag.router.browser;
 
 import com.uwaterloo.watcag.router.elements.EnterWireJunction;
 import com.uwaterloo.watcag.router.elements.ExitWireJunction;
-import com.uwaterloo.watcag.router.elements.TilePath;
-
-import java.util.LinkedList;
 
 public class TilePathTracer {
 
+    /*
+     * Persistent tracer: each tracer holds its search head and a pointer to the tracer it was extended from
+     *   Tracers search backwards from the exit, so the search head is the node nearest the entrance
+     *   Extending a tracer never copies its path, so BFS branches share their common prefix
+     *   The node path is only materialized when a solution is turned into a TilePath
+     */
+
     private EnterWireJunction entrance;
     private ExitWireJunction exit;
 
     private String tileName;
 
-    private boolean isReversed;
-    private LinkedList<String> nodePath;
-
-    public TilePathTracer(EnterWireJunction entrance) {
-        this.entrance = entrance;
-
-        tileName = entrance.getTileName();
-
-        isReversed = false;
-        nodePath = new LinkedList<>();
-        nodePath.add(entrance.getNodeName());
-    }
+    private TilePathTracer parent;
+    private int nodeId;
+    private int length;
 
     public TilePathTracer(ExitWireJunction exit) {
         this.exit = exit;
 
         tileName = exit.getTileName();
 
-        isReversed = true;
-        nodePath = new LinkedList<>();
-        nodePath.add(exit.getNodeName());
+        parent = null;
+        nodeId = exit.getNodeId();
+        length = 1;
     }
 
-    /*
-     * Deep copy constructor
-     */
-    public TilePathTracer(TilePathTracer ref) {
-        entrance = ref.getEntrance();
-        exit = ref.getExit();
+    private TilePathTracer(TilePathTracer parent, int nodeId) {
+        entrance = parent.getEntrance();
+        exit = parent.getExit();
 
-        tileName = ref.getTileName();
+        tileName = parent.getTileName();
 
-        isReversed = ref.isReversed;
-        nodePath = new LinkedList<>(ref.getNodePath());
+        this.parent = parent;
+        this.nodeId = nodeId;
+        length = parent.getLength() + 1;
     }
 
     public int getLength() {
-        return nodePath.size();
+        return length;
     }
 
     public EnterWireJunction getEntrance() {
         return entrance;
     }
 
-    public void setEntrance(EnterWireJunction entrance) {
-        this.entrance = entrance;
-        nodePath.addFirst(entrance.getNodeName());
-    }
-
     public ExitWireJunction getExit() {
         return exit;
     }
 
-    public void setExit(ExitWireJunction exit) {
-        this.exit = exit;
-        nodePath.addLast(exit.getNodeName());
-    }
-
     public String getTileName() {
         return tileName;
     }
 
-    public LinkedList<String> getNodePath() {
-        return nodePath;
+    public int getSearchHead() {
+        return nodeId;
+    }
+
+    public boolean contains(int nodeId) {
+        for (TilePathTracer trav = this; trav != null; trav = trav.parent) {
+            if (trav.nodeId == nodeId)
+                return true;
+        }
+        return false;
+    }
+
+    /*
+     * Tracer with the node added at the search head, or null if the node is already on the path
+     */
+    public TilePathTracer addNode(int nodeId) {
+        if (contains(nodeId))
+            return null;
+        return new TilePathTracer(this, nodeId);
     }
 
-    public String getSearchHead() {
-        return isReversed ? nodePath.getFirst() : nodePath.getLast();
+    /*
+     * Tracer completed with the entrance junction; this tracer is left as is
+     */
+    public TilePathTracer setEntrance(EnterWireJunction entrance) {
+        TilePathTracer solution = new TilePathTracer(this, entrance.getNodeId());
+        solution.entrance = entrance;
+        return solution;
     }
 
-    public boolean addNode(String nodeName) {
-        if (nodePath.contains(nodeName))
-            return false;
+    /*
+     * Node IDs from entrance to exit
+     */
+    public int[] getNodePath() {
+        int[] nodePath = new int[length];
+
+        int i = 0;
+        for (TilePathTracer trav = this; trav != null; trav = trav.parent)
+            nodePath[i++] = trav.nodeId;
 
-        if (isReversed)
-            nodePath.addFirst(nodeName);
-        else
-            nodePath.addLast(nodeName);
-        return true;
+        return nodePath;
     }
 }
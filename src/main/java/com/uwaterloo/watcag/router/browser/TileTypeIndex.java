@@ -0,0 +1,338 @@
+package com.uwaterloo.watcag.router.browser;
+
+import com.uwaterloo.watcag.router.elements.WireDirection;
+import com.uwaterloo.watcag.router.elements.WireGeometry;
+import com.uwaterloo.watcag.util.RouteUtil;
+import com.xilinx.rapidwright.design.Design;
+import com.xilinx.rapidwright.device.PIP;
+import com.xilinx.rapidwright.device.Tile;
+import com.xilinx.rapidwright.device.TileTypeEnum;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+public class TileTypeIndex {
+
+    /*
+     * Wire-to-PIP adjacency of a single tile type, shared by every tile of that type
+     *   PIPs are identified by their position in Tile.getPIPs(), which is the same for all tiles of one type
+     *   Wires are identified by a dense local index, assigned in order of first appearance among the PIPs
+     */
+
+    private static final int[] NO_PIPS = new int[0];
+    private static final int[] NO_WIRES = new int[0];
+
+    /*
+     * Wire classes are packed into one int per wire, so that any lookup is a single array read
+     *   Bits 0-3 are class flags, bits 8-19 are the entering geometry and bits 20-31 the exiting geometry
+     *   Geometry is a direction (ordinal + 1, 0 for none) in the upper 4 bits and a length in the lower 8 bits
+     */
+    private static final int BUFFER_FLAG = 0x1;
+    private static final int CLK_FLAG = 0x2;
+    private static final int ENTER_HOP_FLAG = 0x4;
+    private static final int EXIT_HOP_FLAG = 0x8;
+    private static final int ENTER_GEOMETRY_SHIFT = 8;
+    private static final int EXIT_GEOMETRY_SHIFT = 20;
+    private static final int GEOMETRY_MASK = 0xFFF;
+    private static final int LENGTH_MASK = 0xFF;
+
+    private static final WireDirection[] DIRECTIONS = WireDirection.values();
+
+    private TileTypeEnum tileType;
+    // Tile the index was read from, against which a cached index is checked
+    private String refTileName;
+
+    private HashMap<String, Integer> wireIndexMap;
+    private ArrayList<String> wireNames;
+
+    private int[] pipStartWires;
+    private int[] pipEndWires;
+
+    // Indexed by local wire index, listing positions of PIPs that start/end at the wire
+    private int[][] fwdPIPs;
+    private int[][] bkwdPIPs;
+
+    private int[] wireClasses;
+    private boolean hasGeometry;
+
+    // Local index of the wire at the other end of each wire, or -1 if it isn't a wire of the tile type
+    private int[] enterOtherWires;
+    private int[] exitOtherWires;
+
+    private WireGeometry[] enterGeometry;
+    private WireGeometry[] exitGeometry;
+
+    public TileTypeIndex(Tile refTile) {
+        tileType = refTile.getTileTypeEnum();
+        refTileName = refTile.getName();
+
+        wireIndexMap = new HashMap<>();
+        wireNames = new ArrayList<>();
+
+        ArrayList<PIP> pips = refTile.getPIPs();
+        pipStartWires = new int[pips.size()];
+        pipEndWires = new int[pips.size()];
+
+        for (int i = 0; i < pips.size(); i++) {
+            pipStartWires[i] = indexWire(pips.get(i).getStartWireName());
+            pipEndWires[i] = indexWire(pips.get(i).getEndWireName());
+        }
+
+        buildAdjacency();
+        classifyWires();
+    }
+
+    /*
+     * Rebuild an index from its wire names, PIP endpoints and wire classes, as saved by FabricCache
+     */
+    public TileTypeIndex(TileTypeEnum tileType, String refTileName, ArrayList<String> wireNames, int[] pipStartWires,
+                         int[] pipEndWires, int[] wireClasses, int[] enterOtherWires, int[] exitOtherWires) {
+        this.tileType = tileType;
+        this.refTileName = refTileName;
+
+        wireIndexMap = new HashMap<>();
+        this.wireNames = new ArrayList<>();
+        for (String wireName : wireNames)
+            indexWire(wireName);
+
+        this.pipStartWires = pipStartWires;
+        this.pipEndWires = pipEndWires;
+
+        buildAdjacency();
+
+        this.wireClasses = wireClasses;
+        if (enterOtherWires.length > 0)
+            setGeometry(wireClasses, enterOtherWires, exitOtherWires);
+    }
+
+    private void buildAdjacency() {
+        int[] fwdCount = new int[wireNames.size()];
+        int[] bkwdCount = new int[wireNames.size()];
+        for (int i = 0; i < pipStartWires.length; i++) {
+            fwdCount[pipStartWires[i]] += 1;
+            bkwdCount[pipEndWires[i]] += 1;
+        }
+
+        fwdPIPs = new int[wireNames.size()][];
+        bkwdPIPs = new int[wireNames.size()][];
+        for (int w = 0; w < wireNames.size(); w++) {
+            fwdPIPs[w] = fwdCount[w] == 0 ? NO_PIPS : new int[fwdCount[w]];
+            bkwdPIPs[w] = bkwdCount[w] == 0 ? NO_PIPS : new int[bkwdCount[w]];
+            fwdCount[w] = 0;
+            bkwdCount[w] = 0;
+        }
+
+        for (int i = 0; i < pipStartWires.length; i++) {
+            int start = pipStartWires[i];
+            int end = pipEndWires[i];
+            fwdPIPs[start][fwdCount[start]++] = i;
+            bkwdPIPs[end][bkwdCount[end]++] = i;
+        }
+    }
+
+    /*
+     * Buffer and clock classes only depend on wire names and PIPs, so they are the same on every tile of the type
+     */
+    private void classifyWires() {
+        wireClasses = new int[wireNames.size()];
+        for (int w = 0; w < wireNames.size(); w++) {
+            String wireName = wireNames.get(w);
+            if (RouteUtil.isBufferWireName(wireName) || (fwdPIPs[w].length > 0 && bkwdPIPs[w].length > 0))
+                wireClasses[w] |= BUFFER_FLAG;
+            if (RouteUtil.isClkNode(wireName))
+                wireClasses[w] |= CLK_FLAG;
+        }
+    }
+
+    /*
+     * Classify hop wires by their geometry on a reference tile away from the device edges
+     *   Wires that leave the device on the reference tile are not hops, so the tile must be fully surrounded
+     */
+    public void classifyGeometry(Design d, Tile refTile) {
+        String tileName = refTile.getName();
+
+        int[] classes = wireClasses.clone();
+        int[] enterOthers = new int[wireNames.size()];
+        int[] exitOthers = new int[wireNames.size()];
+
+        for (int w = 0; w < wireNames.size(); w++) {
+            String wireName = wireNames.get(w);
+            classes[w] &= BUFFER_FLAG | CLK_FLAG;
+
+            WireGeometry enter = RouteUtil.traceEnterWireGeometry(d, tileName, wireName);
+            classes[w] |= encodeGeometry(enter.getDirection(), enter.getLength()) << ENTER_GEOMETRY_SHIFT;
+            if (enter.isHop())
+                classes[w] |= ENTER_HOP_FLAG;
+            enterOthers[w] = enter.getOtherWireName() == null ? -1 : getWireIndex(enter.getOtherWireName());
+
+            WireGeometry exit = RouteUtil.traceExitWireGeometry(d, tileName, wireName);
+            classes[w] |= encodeGeometry(exit.getDirection(), exit.getLength()) << EXIT_GEOMETRY_SHIFT;
+            if (exit.isHop())
+                classes[w] |= EXIT_HOP_FLAG;
+            exitOthers[w] = exit.getOtherWireName() == null ? -1 : getWireIndex(exit.getOtherWireName());
+        }
+
+        setGeometry(classes, enterOthers, exitOthers);
+    }
+
+    private void setGeometry(int[] classes, int[] enterOthers, int[] exitOthers) {
+        WireGeometry[] enters = new WireGeometry[wireNames.size()];
+        WireGeometry[] exits = new WireGeometry[wireNames.size()];
+        for (int w = 0; w < wireNames.size(); w++) {
+            enters[w] = decodeGeometry(classes[w] >>> ENTER_GEOMETRY_SHIFT, enterOthers[w]);
+            exits[w] = decodeGeometry(classes[w] >>> EXIT_GEOMETRY_SHIFT, exitOthers[w]);
+        }
+
+        wireClasses = classes;
+        enterOtherWires = enterOthers;
+        exitOtherWires = exitOthers;
+        enterGeometry = enters;
+        exitGeometry = exits;
+        hasGeometry = true;
+    }
+
+    private WireGeometry decodeGeometry(int geometry, int otherWire) {
+        WireDirection dir = decodeDirection(geometry);
+        if (dir == null && otherWire < 0)
+            return WireGeometry.NONE;
+        return new WireGeometry(dir, geometry & LENGTH_MASK, otherWire < 0 ? null : wireNames.get(otherWire));
+    }
+
+    private static int encodeGeometry(WireDirection dir, int length) {
+        if (dir == null)
+            return 0;
+        return ((dir.ordinal() + 1) << 8) | Math.min(length, LENGTH_MASK);
+    }
+
+    private static WireDirection decodeDirection(int geometry) {
+        int dir = (geometry & GEOMETRY_MASK) >>> 8;
+        return dir == 0 ? null : DIRECTIONS[dir - 1];
+    }
+
+    private int indexWire(String wireName) {
+        Integer index = wireIndexMap.get(wireName);
+        if (index == null) {
+            index = wireNames.size();
+            wireIndexMap.put(wireName, index);
+            wireNames.add(wireName);
+        }
+        return index;
+    }
+
+    public TileTypeEnum getTileType() {
+        return tileType;
+    }
+
+    public String getRefTileName() {
+        return refTileName;
+    }
+
+    public int getWireCount() {
+        return wireNames.size();
+    }
+
+    public int getPIPCount() {
+        return pipStartWires.length;
+    }
+
+    /*
+     * Returns -1 for wires that are not associated with any PIP of the tile type
+     */
+    public int getWireIndex(String wireName) {
+        Integer index = wireIndexMap.get(wireName);
+        return index == null ? -1 : index;
+    }
+
+    public String getWireName(int wireIndex) {
+        return wireNames.get(wireIndex);
+    }
+
+    public int getPIPStartWire(int pipIndex) {
+        return pipStartWires[pipIndex];
+    }
+
+    public int getPIPEndWire(int pipIndex) {
+        return pipEndWires[pipIndex];
+    }
+
+    public int[] getFwdPIPs(int wireIndex) {
+        if (wireIndex < 0)
+            return NO_PIPS;
+        return fwdPIPs[wireIndex];
+    }
+
+    public int[] getBkwdPIPs(int wireIndex) {
+        if (wireIndex < 0)
+            return NO_PIPS;
+        return bkwdPIPs[wireIndex];
+    }
+
+    /*
+     * Position of the PIP from the start wire to the end wire, or -1 if there is none
+     *   Only the fan-out of the start wire is scanned, rather than every PIP of the tile
+     */
+    public int getPIP(int startWireIndex, int endWireIndex) {
+        for (int pipIndex : getFwdPIPs(startWireIndex)) {
+            if (pipEndWires[pipIndex] == endWireIndex)
+                return pipIndex;
+        }
+        return -1;
+    }
+
+    public int[] getFwdPIPs(String wireName) {
+        return getFwdPIPs(getWireIndex(wireName));
+    }
+
+    public int[] getBkwdPIPs(String wireName) {
+        return getBkwdPIPs(getWireIndex(wireName));
+    }
+
+    public int getWireClass(int wireIndex) {
+        return wireClasses[wireIndex];
+    }
+
+    /*
+     * Other wire ends are only saved once geometry has been classified; empty otherwise
+     */
+    public int[] getEnterOtherWires() {
+        return hasGeometry ? enterOtherWires : NO_WIRES;
+    }
+
+    public int[] getExitOtherWires() {
+        return hasGeometry ? exitOtherWires : NO_WIRES;
+    }
+
+    public boolean hasGeometry() {
+        return hasGeometry;
+    }
+
+    public boolean isBuffer(int wireIndex) {
+        return wireIndex >= 0 && (wireClasses[wireIndex] & BUFFER_FLAG) != 0;
+    }
+
+    public boolean isClk(int wireIndex) {
+        return wireIndex >= 0 && (wireClasses[wireIndex] & CLK_FLAG) != 0;
+    }
+
+    /*
+     * Hop wires enter (or exit) the tile from (or to) another tile, as classified on the reference tile
+     */
+    public boolean isEnterHop(int wireIndex) {
+        return wireIndex >= 0 && (wireClasses[wireIndex] & ENTER_HOP_FLAG) != 0;
+    }
+
+    public boolean isExitHop(int wireIndex) {
+        return wireIndex >= 0 && (wireClasses[wireIndex] & EXIT_HOP_FLAG) != 0;
+    }
+
+    /*
+     * Geometry as classified on the reference tile, which may not hold on tiles near the device edges
+     */
+    public WireGeometry getEnterGeometry(int wireIndex) {
+        return enterGeometry[wireIndex];
+    }
+
+    public WireGeometry getExitGeometry(int wireIndex) {
+        return exitGeometry[wireIndex];
+    }
+}
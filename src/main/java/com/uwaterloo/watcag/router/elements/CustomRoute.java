@@ -1,10 +1,15 @@
 package com.uwaterloo.watcag.router.elements;
 
+import com.uwaterloo.watcag.DesignFailureException;
+import com.uwaterloo.watcag.router.RouteForge;
+import com.uwaterloo.watcag.router.browser.FabricGraph;
 import com.uwaterloo.watcag.util.RouterLog;
 import com.xilinx.rapidwright.design.Design;
 import com.xilinx.rapidwright.design.Net;
+import com.xilinx.rapidwright.device.PIP;
 
 import java.util.ArrayList;
+import java.util.List;
 
 public class CustomRoute {
 
@@ -38,13 +43,44 @@ public class CustomRoute {
         }
     }
 
+    /*
+     * Tile paths are copied by node ID, which only holds if each of them lands on an INT tile of the same type
+     *   Nodes of a tile path all lie on one tile, so its first node stands in for the rest
+     */
+    private void checkOffset(int dx, int dy) {
+        for (TilePath path : route) {
+            int nodeId = path.getNodePath()[0];
+            int offsetNodeId = FabricGraph.getOffsetNodeId(nodeId, dx, dy);
+
+            if (offsetNodeId == FabricGraph.NULL_NODE)
+                throw new DesignFailureException("Route <" + this + "> cannot be copied by (" + dx + ", " + dy
+                        + "): no INT tile at offset from <" + path.getTileName() + ">.");
+
+            if (FabricGraph.getTile(nodeId).getTileTypeEnum() != FabricGraph.getTile(offsetNodeId).getTileTypeEnum())
+                throw new DesignFailureException("Route <" + this + "> cannot be copied by (" + dx + ", " + dy
+                        + "): <" + path.getTileName() + "> and <" + FabricGraph.getTileName(offsetNodeId)
+                        + "> are of different tile types.");
+        }
+    }
+
     public CustomRoute copyWithOffset(Design d, int dx, int dy) {
+        checkOffset(dx, dy);
+
         CustomRoute copy = new CustomRoute(template.copyWithOffset(d, dx, dy));
         copy.setRouteIndex(routeIndex);
 
+        // Tile paths reuse the junctions of the template copy, so each junction is only offset once
+        ArrayList<WireJunction> copyTemplate = copy.getTemplate().getTemplate();
         ArrayList<TilePath> copyRoute = new ArrayList<>();
-        for (int i = 0; i < route.size(); i++)
-            copyRoute.add(route.get(i).copyWithOffset(d, dx, dy));
+        for (int i = 0; i < route.size(); i++) {
+            TilePath path = route.get(i);
+            if (path.getEnterJunction().equals(template.getTemplate(2 * i))
+                    && path.getExitJunction().equals(template.getTemplate(2 * i + 1)))
+                copyRoute.add(path.copyWithOffset((EnterWireJunction) copyTemplate.get(2 * i),
+                        (ExitWireJunction) copyTemplate.get(2 * i + 1), dx, dy));
+            else
+                copyRoute.add(path.copyWithOffset(d, dx, dy));
+        }
         copy.setRoute(copyRoute);
 
         return copy;
@@ -97,7 +133,7 @@ public class CustomRoute {
             TilePath path = route.get(i);
             if (path.getEnterJunction().equals(newPath.getEnterJunction())
                     && path.getExitJunction().equals(newPath.getExitJunction())) {
-                route.set(i, path);
+                route.set(i, newPath);
                 return;
             }
         }
@@ -132,10 +168,28 @@ public class CustomRoute {
     }
 
     public void commitToNet(Design d, Net net) {
+        commitPIPsToNet(net, resolvePIPs(d));
+    }
+
+    /*
+     * Resolves and occupies the PIPs of every tile path, in route order, without touching the net
+     */
+    public ArrayList<PIP> resolvePIPs(Design d) {
+        ArrayList<PIP> pips = new ArrayList<>();
+        for (TilePath path : route)
+            path.collectPIPs(d, pips);
+        return pips;
+    }
+
+    /*
+     * Adds PIPs from resolvePIPs() to the net in one batch
+     */
+    public void commitPIPsToNet(Net net, List<PIP> pips) {
         RouterLog.log("Committing PIPs to net <" + net.getName() + ">:", RouterLog.Level.INFO);
         RouterLog.indent();
         for (TilePath path : route)
-            path.commitPIPsToNet(d, net);
+            path.logJunctions();
+        RouteForge.addPIPs(net, pips);
         RouterLog.indent(-1);
     }
 
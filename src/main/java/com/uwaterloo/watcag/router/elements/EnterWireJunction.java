@@ -1,5 +1,6 @@
 package com.uwaterloo.watcag.router.elements;
 
+import com.uwaterloo.watcag.router.browser.FabricGraph;
 import com.uwaterloo.watcag.util.RouteUtil;
 import com.xilinx.rapidwright.design.Design;
 import com.xilinx.rapidwright.device.Tile;
@@ -7,7 +8,8 @@ import com.xilinx.rapidwright.device.Tile;
 public class EnterWireJunction extends WireJunction {
 
     private boolean isSrc;
-    private ExitWireJunction srcJunction;
+    // Derived lazily; volatile, as junctions of the fan-out caches are shared between routing threads
+    private volatile ExitWireJunction srcJunction;
 
     private EnterWireJunction(String tileName, String wireName) {
         super(tileName, wireName);
@@ -16,8 +18,9 @@ public class EnterWireJunction extends WireJunction {
     public EnterWireJunction(Design d, String tileName, String wireName) {
         super(tileName, wireName);
 
-        wireLength = RouteUtil.extractEnterWireLength(d, tileName, wireName);
-        direction = RouteUtil.extractEnterWireDirection(d, tileName, wireName);
+        WireGeometry geometry = RouteUtil.getEnterWireGeometry(d, tileName, wireName);
+        wireLength = geometry.getLength();
+        direction = geometry.getDirection();
 
         isSrc = false;
         srcJunction = null;
@@ -31,11 +34,29 @@ public class EnterWireJunction extends WireJunction {
         this.direction = direction;
     }
 
+    private EnterWireJunction(int nodeId, String wireName) {
+        super(nodeId, wireName);
+    }
+
+    /*
+     * Wires of the fabric graph keep their direction and length, as long as the offset node hops the same way
+     *   Anything else, such as a hop that leaves the device at the offset, derives its geometry again
+     */
     @Override
     public EnterWireJunction copyWithOffset(Design d, int dx, int dy) {
-        Tile offsetTile = d.getDevice().getTile(tileName).getTileXYNeighbor(dx, dy);
-
-        EnterWireJunction copy = new EnterWireJunction(d, offsetTile.getName(), wireName);
+        int offsetNodeId = FabricGraph.getOffsetNodeId(nodeId, dx, dy);
+
+        EnterWireJunction copy;
+        if (offsetNodeId != FabricGraph.NULL_NODE
+                && FabricGraph.isEnterHop(nodeId) == FabricGraph.isEnterHop(offsetNodeId)) {
+            copy = new EnterWireJunction(offsetNodeId, wireName);
+            copy.direction = direction;
+            copy.wireLength = wireLength;
+        }
+        else {
+            Tile offsetTile = d.getDevice().getTile(tileName).getTileXYNeighbor(dx, dy);
+            copy = new EnterWireJunction(d, offsetTile.getName(), wireName);
+        }
         copy.isSrc = isSrc;
 
         return copy;
@@ -52,12 +73,20 @@ public class EnterWireJunction extends WireJunction {
     }
 
     private void setSrcJunction(Design d) {
-        Tile baseTile = d.getDevice().getTile(getTileName());
-        Tile srcTile = null;
-
         if (direction == null)
             return;
 
+        // Wires of the fabric graph have their other end in the wire classification table
+        int srcNodeId = FabricGraph.getEnterSrcNodeId(nodeId);
+        if (srcNodeId != FabricGraph.NULL_NODE) {
+            srcJunction = new ExitWireJunction(FabricGraph.getTileName(srcNodeId), FabricGraph.getWireName(srcNodeId),
+                    this, wireLength, direction);
+            return;
+        }
+
+        Tile baseTile = d.getDevice().getTile(getTileName());
+        Tile srcTile = null;
+
         switch (direction) {
             case NORTH:
                 srcTile = baseTile.getTileXYNeighbor(0, -1 * wireLength);
@@ -82,8 +111,8 @@ public class EnterWireJunction extends WireJunction {
     @Override
     public String toString() {
         if (isSrc)
-            return "<" + nodeName + ">[src]";
-        return "<" + nodeName + ">[enter " + RouteUtil.directionToString(direction) + wireLength + "]";
+            return "<" + getNodeName() + ">[src]";
+        return "<" + getNodeName() + ">[enter " + RouteUtil.directionToString(direction) + wireLength + "]";
     }
 
     public static EnterWireJunction newSrcJunction(String tileName, String wireName) {
@@ -1,5 +1,6 @@
 package com.uwaterloo.watcag.router.elements;
 
+import com.uwaterloo.watcag.router.browser.FabricGraph;
 import com.uwaterloo.watcag.util.RouteUtil;
 import com.xilinx.rapidwright.design.Design;
 import com.xilinx.rapidwright.device.Tile;
@@ -7,7 +8,8 @@ import com.xilinx.rapidwright.device.Tile;
 public class ExitWireJunction extends WireJunction {
 
     private boolean isSnk;
-    private EnterWireJunction destJunction;
+    // Derived lazily; volatile, as junctions of the fan-out caches are shared between routing threads
+    private volatile EnterWireJunction destJunction;
 
     private ExitWireJunction(String tileName, String wireName) {
         super(tileName, wireName);
@@ -16,8 +18,9 @@ public class ExitWireJunction extends WireJunction {
     public ExitWireJunction(Design d, String tileName, String wireName) {
         super(tileName, wireName);
 
-        wireLength = RouteUtil.extractExitWireLength(d, tileName, wireName);
-        direction = RouteUtil.extractExitWireDirection(d, tileName, wireName);
+        WireGeometry geometry = RouteUtil.getExitWireGeometry(d, tileName, wireName);
+        wireLength = geometry.getLength();
+        direction = geometry.getDirection();
 
         isSnk = false;
         destJunction = null;
@@ -31,11 +34,29 @@ public class ExitWireJunction extends WireJunction {
         this.direction = direction;
     }
 
+    private ExitWireJunction(int nodeId, String wireName) {
+        super(nodeId, wireName);
+    }
+
+    /*
+     * Wires of the fabric graph keep their direction and length, as long as the offset node hops the same way
+     *   Anything else, such as a hop that leaves the device at the offset, derives its geometry again
+     */
     @Override
     public ExitWireJunction copyWithOffset(Design d, int dx, int dy) {
-        Tile offsetTile = d.getDevice().getTile(tileName).getTileXYNeighbor(dx, dy);
-
-        ExitWireJunction copy = new ExitWireJunction(d, offsetTile.getName(), wireName);
+        int offsetNodeId = FabricGraph.getOffsetNodeId(nodeId, dx, dy);
+
+        ExitWireJunction copy;
+        if (offsetNodeId != FabricGraph.NULL_NODE
+                && FabricGraph.isExitHop(nodeId) == FabricGraph.isExitHop(offsetNodeId)) {
+            copy = new ExitWireJunction(offsetNodeId, wireName);
+            copy.direction = direction;
+            copy.wireLength = wireLength;
+        }
+        else {
+            Tile offsetTile = d.getDevice().getTile(tileName).getTileXYNeighbor(dx, dy);
+            copy = new ExitWireJunction(d, offsetTile.getName(), wireName);
+        }
         copy.isSnk = isSnk;
 
         return copy;
@@ -52,12 +73,20 @@ public class ExitWireJunction extends WireJunction {
     }
 
     private void setDestJunction(Design d) {
-        Tile baseTile = d.getDevice().getTile(getTileName());
-        Tile destTile = null;
-
         if (direction == null)
             return;
 
+        // Wires of the fabric graph have their other end in the wire classification table
+        int destNodeId = FabricGraph.getExitDestNodeId(nodeId);
+        if (destNodeId != FabricGraph.NULL_NODE) {
+            destJunction = new EnterWireJunction(FabricGraph.getTileName(destNodeId), FabricGraph.getWireName(destNodeId),
+                    this, wireLength, direction);
+            return;
+        }
+
+        Tile baseTile = d.getDevice().getTile(getTileName());
+        Tile destTile = null;
+
         switch (direction) {
             case NORTH:
                 destTile = baseTile.getTileXYNeighbor(0, wireLength);
@@ -82,8 +111,8 @@ public class ExitWireJunction extends WireJunction {
     @Override
     public String toString() {
         if (isSnk)
-            return "<" + nodeName + ">[snk]";
-        return "<" + nodeName + ">[exit " + RouteUtil.directionToString(direction) + wireLength + "]";
+            return "<" + getNodeName() + ">[snk]";
+        return "<" + getNodeName() + ">[exit " + RouteUtil.directionToString(direction) + wireLength + "]";
     }
 
     public static ExitWireJunction newSnkJunction(String tileName, String wireName) {
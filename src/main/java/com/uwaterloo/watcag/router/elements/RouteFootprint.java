@@ -3,6 +3,7 @@ package com.uwaterloo.watcag.router.elements;
 import com.uwaterloo.watcag.util.RouterLog;
 import com.xilinx.rapidwright.design.Design;
 import com.xilinx.rapidwright.design.Net;
+import com.xilinx.rapidwright.device.PIP;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -47,9 +48,30 @@ public class RouteFootprint {
     }
 
     public void commit(Design d) {
+        commit(resolvePIPs(d));
+    }
+
+    /*
+     * Resolves and occupies the PIPs of every route; safe to run concurrently with other footprints, as nets are
+     *   disjoint and no net is modified
+     */
+    public HashMap<CustomRoute, ArrayList<PIP>> resolvePIPs(Design d) {
+        HashMap<CustomRoute, ArrayList<PIP>> routePIPs = new HashMap<>();
+        for (CustomRoute route : routeNetMap.keySet())
+            routePIPs.put(route, route.resolvePIPs(d));
+        return routePIPs;
+    }
+
+    /*
+     * Adds resolved PIPs to the nets of their routes; returns the number of PIPs added
+     */
+    public int commit(HashMap<CustomRoute, ArrayList<PIP>> routePIPs) {
+        int pipCount = 0;
         for (CustomRoute route : routeNetMap.keySet()) {
-            Net net = routeNetMap.get(route);
-            route.commitToNet(d, net);
+            ArrayList<PIP> pips = routePIPs.get(route);
+            route.commitPIPsToNet(routeNetMap.get(route), pips);
+            pipCount += pips.size();
         }
+        return pipCount;
     }
 }
@@ -43,12 +43,26 @@ public class RouteTemplate {
         template.add(snk);
     }
 
+    /*
+     * Distances between src and snk are unchanged by an offset, so no tiles are looked up for the copy
+     */
+    private RouteTemplate(RouteTemplate ref, ArrayList<WireJunction> template) {
+        estimatedCost = ref.getEstimatedCost();
+
+        src = (EnterWireJunction) template.get(0);
+        snk = (ExitWireJunction) template.get(template.size() - 1);
+
+        distanceX = ref.getDistanceX();
+        distanceY = ref.getDistanceY();
+
+        this.template = template;
+    }
+
     public RouteTemplate copyWithOffset(Design d, int dx, int dy) {
-        RouteTemplate copy = new RouteTemplate(d, src.copyWithOffset(d, dx, dy), snk.copyWithOffset(d, dx, dy));
-        for (int i = 1; i < template.size() - 1; i++) {
-            copy.getTemplate().add(i, template.get(i).copyWithOffset(d, dx, dy));
-        }
-        return copy;
+        ArrayList<WireJunction> copyTemplate = new ArrayList<>(template.size());
+        for (WireJunction junction : template)
+            copyTemplate.add(junction.copyWithOffset(d, dx, dy));
+        return new RouteTemplate(this, copyTemplate);
     }
 
     public int getEstimatedCost() {
@@ -146,10 +160,10 @@ public class RouteTemplate {
         return repr;
     }
 
-    public Set<String> getUsage() {
-        Set<String> usage = new HashSet<>();
+    public Set<Integer> getUsage() {
+        Set<Integer> usage = new HashSet<>();
         for (WireJunction junction : template)
-            usage.add(junction.getNodeName());
+            usage.add(junction.getNodeId());
         return usage;
     }
 
@@ -1,15 +1,14 @@
 package com.uwaterloo.watcag.router.elements;
 
 import com.uwaterloo.watcag.router.RouteForge;
+import com.uwaterloo.watcag.router.browser.FabricGraph;
 import com.uwaterloo.watcag.router.browser.TilePathTracer;
-import com.uwaterloo.watcag.util.RouteUtil;
 import com.uwaterloo.watcag.util.RouterLog;
 import com.xilinx.rapidwright.design.Design;
 import com.xilinx.rapidwright.design.Net;
-import com.xilinx.rapidwright.device.Tile;
+import com.xilinx.rapidwright.device.PIP;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 
 public class TilePath {
@@ -21,18 +20,23 @@ public class TilePath {
 
     private String tileName;
 
-    // Inclusive of entering/exiting nodes
-    private ArrayList<String> nodePath;
+    // Node IDs, inclusive of entering/exiting nodes
+    private int[] nodePath;
 
-    private TilePath(EnterWireJunction enterJunction, ExitWireJunction exitJunction, List<String> nodePath) {
-        cost = nodePath.size() - 1;
+    private TilePath(EnterWireJunction enterJunction, ExitWireJunction exitJunction, int[] nodePath) {
+        cost = nodePath.length - 1;
 
         this.enterJunction = enterJunction;
         this.exitJunction = exitJunction;
 
         tileName = enterJunction.getTileName();
 
-        this.nodePath = new ArrayList<>(nodePath);
+        this.nodePath = nodePath;
+    }
+
+    public TilePath(EnterWireJunction enterJunction, ExitWireJunction exitJunction, int[] nodePath, int cost) {
+        this(enterJunction, exitJunction, nodePath);
+        this.cost = cost;
     }
 
     public TilePath(TilePathTracer tracer) {
@@ -43,18 +47,23 @@ public class TilePath {
 
         tileName = tracer.getTileName();
 
-        nodePath = new ArrayList<>(tracer.getNodePath());
+        nodePath = tracer.getNodePath();
     }
 
     public TilePath copyWithOffset(Design d, int dx, int dy) {
-        Tile offsetTile = d.getDevice().getTile(tileName).getTileXYNeighbor(dx, dy);
+        return copyWithOffset(enterJunction.copyWithOffset(d, dx, dy), exitJunction.copyWithOffset(d, dx, dy),
+                dx, dy);
+    }
 
-        ArrayList<String> copyNodePath = new ArrayList<>();
-        for (String nodeName : nodePath)
-            copyNodePath.add(offsetTile.getName() + "/" + RouteUtil.extractNodeWireName(nodeName));
+    /*
+     * Copy onto junctions that were already offset, e.g. those of the route template's copy
+     */
+    public TilePath copyWithOffset(EnterWireJunction offsetEnter, ExitWireJunction offsetExit, int dx, int dy) {
+        int[] copyNodePath = new int[nodePath.length];
+        for (int i = 0; i < nodePath.length; i++)
+            copyNodePath[i] = FabricGraph.getOffsetNodeId(nodePath[i], dx, dy);
 
-        return new TilePath(enterJunction.copyWithOffset(d, dx, dy), exitJunction.copyWithOffset(d, dx, dy),
-                copyNodePath);
+        return new TilePath(offsetEnter, offsetExit, copyNodePath, cost);
     }
 
     public int getCost() {
@@ -89,29 +98,47 @@ public class TilePath {
         return tileName;
     }
 
-    public ArrayList<String> getNodePath() {
+    public int[] getNodePath() {
         return nodePath;
     }
 
-    public String getNodeName(int i) {
+    public int getNodeId(int i) {
         if (i < 0)
-            i += nodePath.size();
-        return nodePath.get(i);
+            i += nodePath.length;
+        return nodePath[i];
+    }
+
+    public String getNodeName(int i) {
+        return FabricGraph.getNodeName(getNodeId(i));
     }
 
     public void commitPIPsToNet(Design d, Net net) {
-        for (int i = 0; i < nodePath.size() - 1; i++) {
-            RouteForge.findAndRoute(d, net, tileName, nodePath.get(i), nodePath.get(i + 1));
-        }
+        ArrayList<PIP> pips = new ArrayList<>();
+        collectPIPs(d, pips);
+        logJunctions();
+        RouteForge.addPIPs(net, pips);
+    }
+
+    /*
+     * Resolves and occupies the PIPs of the path, without adding them to any net
+     */
+    public void collectPIPs(Design d, List<PIP> pips) {
+        for (int i = 0; i < nodePath.length - 1; i++)
+            pips.add(RouteForge.findAndOccupy(d, tileName, nodePath[i], nodePath[i + 1]));
+    }
+
+    public void logJunctions() {
+        for (int i = 0; i < nodePath.length - 1; i++)
+            RouteForge.logJunction(nodePath[i], nodePath[i + 1]);
     }
 
     @Override
     public String toString() {
         String repr = "";
-        for (int i = 0; i < nodePath.size() - 1; i++) {
-            repr += "<" + nodePath.get(i) + "> --> ";
+        for (int i = 0; i < nodePath.length - 1; i++) {
+            repr += "<" + getNodeName(i) + "> --> ";
         }
-        repr += "<" + nodePath.get(nodePath.size() - 1) + ">";
+        repr += "<" + getNodeName(-1) + ">";
 
         return repr;
     }
@@ -0,0 +1,37 @@
+package com.uwaterloo.watcag.router.elements;
+
+public class WireGeometry {
+
+    /*
+     * Direction and length of a wire, as seen from one of its INT tiles, with the name of the wire at its other end
+     *   Instances are immutable and shared by every tile of a tile type
+     */
+
+    public static final WireGeometry NONE = new WireGeometry(null, 0, null);
+
+    private final WireDirection direction;
+    private final int length;
+    private final String otherWireName;
+
+    public WireGeometry(WireDirection direction, int length, String otherWireName) {
+        this.direction = direction;
+        this.length = length;
+        this.otherWireName = otherWireName;
+    }
+
+    public WireDirection getDirection() {
+        return direction;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public String getOtherWireName() {
+        return otherWireName;
+    }
+
+    public boolean isHop() {
+        return direction != null && direction != WireDirection.SELF && length != 0;
+    }
+}
@@ -1,12 +1,13 @@
 package com.uwaterloo.watcag.router.elements;
 
+import com.uwaterloo.watcag.router.browser.FabricGraph;
 import com.xilinx.rapidwright.design.Design;
 import com.xilinx.rapidwright.device.Tile;
 
 public class WireJunction {
 
     protected WireDirection direction;
-    protected String nodeName;
+    protected int nodeId;
     protected String tileName;
 
     protected String wireName;
@@ -14,19 +15,40 @@ public class WireJunction {
 
     protected int tilePathCost;
 
+    // Only built on demand, for logging and committing; volatile, as cached junctions are shared between threads
+    private volatile String nodeName;
+
     public WireJunction(String tileName, String wireName) {
         this.tileName = tileName;
         this.wireName = wireName;
 
-        this.nodeName = tileName + "/" + wireName;
+        nodeId = FabricGraph.getNodeId(tileName, wireName);
 
         tilePathCost = 0;
     }
 
-    public WireJunction copyWithOffset(Design d, int dx, int dy) {
-        Tile offsetTile = d.getDevice().getTile(tileName).getTileXYNeighbor(dx, dy);
+    /*
+     * Junction on the node at the given node ID, which must be a node of the fabric graph
+     */
+    protected WireJunction(int nodeId, String wireName) {
+        this.nodeId = nodeId;
+        this.tileName = FabricGraph.getTileName(nodeId);
+        this.wireName = wireName;
 
-        WireJunction copy = new WireJunction(offsetTile.getName(), wireName);
+        tilePathCost = 0;
+    }
+
+    public WireJunction copyWithOffset(Design d, int dx, int dy) {
+        int offsetNodeId = FabricGraph.getOffsetNodeId(nodeId, dx, dy);
+
+        WireJunction copy;
+        if (offsetNodeId != FabricGraph.NULL_NODE) {
+            copy = new WireJunction(offsetNodeId, wireName);
+        }
+        else {
+            Tile offsetTile = d.getDevice().getTile(tileName).getTileXYNeighbor(dx, dy);
+            copy = new WireJunction(offsetTile.getName(), wireName);
+        }
         copy.direction = direction;
         copy.wireLength = wireLength;
 
@@ -37,7 +59,13 @@ public class WireJunction {
         return direction;
     }
 
+    public int getNodeId() {
+        return nodeId;
+    }
+
     public String getNodeName() {
+        if (nodeName == null)
+            nodeName = tileName + "/" + wireName;
         return nodeName;
     }
 
@@ -62,11 +90,14 @@ public class WireJunction {
     }
 
     public boolean equals(WireJunction o) {
-        return nodeName.equals(o.getNodeName());
+        if (nodeId != o.getNodeId())
+            return false;
+        // Wires outside of the fabric graph can only be told apart by name
+        return nodeId != FabricGraph.NULL_NODE || getNodeName().equals(o.getNodeName());
     }
 
     @Override
     public String toString() {
-        return "<" + nodeName + ">";
+        return "<" + getNodeName() + ">";
     }
 }
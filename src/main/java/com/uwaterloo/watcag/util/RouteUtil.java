@@ -1,16 +1,28 @@
 package com.uwaterloo.watcag.util;
 
 import java.util.ArrayList;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import com.uwaterloo.watcag.router.browser.FabricBrowser;
+import com.uwaterloo.watcag.router.browser.FabricGraph;
 import com.uwaterloo.watcag.router.elements.WireDirection;
+import com.uwaterloo.watcag.router.elements.WireGeometry;
 import com.xilinx.rapidwright.design.Design;
 import com.xilinx.rapidwright.device.*;
 
 public class RouteUtil {
 
+    private static final Pattern CLK_PATTERN = Pattern.compile("GCLK.*");
+
+    /*
+     * Not sure if all buffers look like these, but this is true for part xcku5p-ffvb676-2-e
+     */
+    private static final Pattern[] BUFFER_PATTERNS = {
+            Pattern.compile("INT_NODE_SDQ_\\d+_INT_OUT\\d+"),
+            Pattern.compile("INT_INT_SDQ_\\d+_INT_OUT\\d+"),
+            Pattern.compile("INT_NODE_IMUX_\\d+_INT_OUT\\d+"),
+            Pattern.compile("BYPASS_W\\d+")
+    };
+
     public static String directionToString(WireDirection dir) {
         if (dir == null)
             return null;
@@ -141,112 +153,82 @@ public class RouteUtil {
         return tileName + "/" + wireName;
     }
 
-    public static WireDirection extractExitWireDirection(Design d, String tileName, String exitWireName) {
-        Tile baseTile = d.getDevice().getTile(tileName);
-        Tile destTile = null;
-        for (Wire endWire : baseTile.getWireConnections(exitWireName)) {
-            if (endWire.getTile().getTileTypeEnum().equals(TileTypeEnum.INT)) {
-                destTile = endWire.getTile();
-                break;
-            }
-        }
+    /*
+     * Direction and length of a wire, from the wire classification table for INT tile wires
+     *   Only wires outside of the fabric graph are traced through RapidWright
+     */
+    public static WireGeometry getExitWireGeometry(Design d, String tileName, String exitWireName) {
+        int nodeId = FabricGraph.getNodeId(tileName, exitWireName);
+        if (nodeId != FabricGraph.NULL_NODE && FabricGraph.getIntTileIndex().hasGeometry())
+            return FabricGraph.getExitGeometry(nodeId);
+        return traceExitWireGeometry(d, tileName, exitWireName);
+    }
 
-        if (destTile == null)
-            return null;
-        if (destTile.equals(baseTile))
-            return WireDirection.SELF;
-        return baseTile.getTileXCoordinate() == destTile.getTileXCoordinate()
-                ? (destTile.getTileYCoordinate() > baseTile.getTileYCoordinate() ? WireDirection.NORTH : WireDirection.SOUTH)
-                : (destTile.getTileXCoordinate() > baseTile.getTileXCoordinate() ? WireDirection.EAST : WireDirection.WEST);
+    public static WireGeometry getEnterWireGeometry(Design d, String tileName, String enterWireName) {
+        int nodeId = FabricGraph.getNodeId(tileName, enterWireName);
+        if (nodeId != FabricGraph.NULL_NODE && FabricGraph.getIntTileIndex().hasGeometry())
+            return FabricGraph.getEnterGeometry(nodeId);
+        return traceEnterWireGeometry(d, tileName, enterWireName);
     }
 
-    public static int extractExitWireLength(Design d, String tileName, String exitWireName) {
+    public static WireGeometry traceExitWireGeometry(Design d, String tileName, String exitWireName) {
         Tile baseTile = d.getDevice().getTile(tileName);
-        Tile destTile = null;
+        Wire destWire = null;
         for (Wire endWire : baseTile.getWireConnections(exitWireName)) {
             if (endWire.getTile().getTileTypeEnum().equals(TileTypeEnum.INT)) {
-                destTile = endWire.getTile();
+                destWire = endWire;
                 break;
             }
         }
 
-        if (destTile == null)
-            return 0;
-        return (baseTile.getTileXCoordinate() == destTile.getTileXCoordinate())
-                ? Math.abs(destTile.getTileYCoordinate() - baseTile.getTileYCoordinate())
-                : Math.abs(destTile.getTileXCoordinate() - baseTile.getTileXCoordinate());
-    }
-
-    public static WireDirection extractEnterWireDirection(Design d, String tileName, String enterWireName) {
-        Tile baseTile = d.getDevice().getTile(tileName);
-        Tile offsetTile = null;
+        if (destWire == null)
+            return WireGeometry.NONE;
 
-        Wire wire = new Wire(baseTile, enterWireName);
-        offsetTile = wire.getStartWire().getTile();
+        Tile destTile = destWire.getTile();
+        if (destTile.equals(baseTile))
+            return new WireGeometry(WireDirection.SELF, 0, destWire.getWireName());
 
-        if (offsetTile == null)
-            return null;
-        if (baseTile.getName().equals(offsetTile.getName()))
-            return WireDirection.SELF;
-        if (baseTile.getTileXCoordinate() == offsetTile.getTileXCoordinate()) {
-            return baseTile.getTileYCoordinate() > offsetTile.getTileYCoordinate()
-                    ? WireDirection.NORTH : WireDirection.SOUTH;
-        }
-        else {
-            return baseTile.getTileXCoordinate() > offsetTile.getTileXCoordinate()
-                    ? WireDirection.EAST : WireDirection.WEST;
+        if (baseTile.getTileXCoordinate() == destTile.getTileXCoordinate()) {
+            return new WireGeometry(destTile.getTileYCoordinate() > baseTile.getTileYCoordinate()
+                    ? WireDirection.NORTH : WireDirection.SOUTH,
+                    Math.abs(destTile.getTileYCoordinate() - baseTile.getTileYCoordinate()), destWire.getWireName());
         }
+        return new WireGeometry(destTile.getTileXCoordinate() > baseTile.getTileXCoordinate()
+                ? WireDirection.EAST : WireDirection.WEST,
+                Math.abs(destTile.getTileXCoordinate() - baseTile.getTileXCoordinate()), destWire.getWireName());
     }
 
-    public static int extractEnterWireLength(Design d, String tileName, String enterWireName) {
+    public static WireGeometry traceEnterWireGeometry(Design d, String tileName, String enterWireName) {
         Tile baseTile = d.getDevice().getTile(tileName);
-        Tile offsetTile = null;
 
-        Wire wire = new Wire(baseTile, enterWireName);
-        offsetTile = wire.getStartWire().getTile();
+        Wire srcWire = new Wire(baseTile, enterWireName).getStartWire();
+        Tile offsetTile = srcWire == null ? null : srcWire.getTile();
 
         if (offsetTile == null)
-            return 0;
-        return baseTile.getTileXCoordinate() == offsetTile.getTileXCoordinate()
-                ? Math.abs(baseTile.getTileYCoordinate() - offsetTile.getTileYCoordinate())
-                : Math.abs(baseTile.getTileXCoordinate() - offsetTile.getTileXCoordinate());
-    }
-
-    public static boolean isClkNode(String nodeName) {
-        Matcher matcher = Pattern.compile("GCLK.*").matcher(nodeName);
-        if (matcher.find()) return true;
+            return WireGeometry.NONE;
+        if (baseTile.getName().equals(offsetTile.getName()))
+            return new WireGeometry(WireDirection.SELF, 0, srcWire.getWireName());
 
-        return false;
+        if (baseTile.getTileXCoordinate() == offsetTile.getTileXCoordinate()) {
+            return new WireGeometry(baseTile.getTileYCoordinate() > offsetTile.getTileYCoordinate()
+                    ? WireDirection.NORTH : WireDirection.SOUTH,
+                    Math.abs(baseTile.getTileYCoordinate() - offsetTile.getTileYCoordinate()), srcWire.getWireName());
+        }
+        return new WireGeometry(baseTile.getTileXCoordinate() > offsetTile.getTileXCoordinate()
+                ? WireDirection.EAST : WireDirection.WEST,
+                Math.abs(baseTile.getTileXCoordinate() - offsetTile.getTileXCoordinate()), srcWire.getWireName());
     }
 
-    /*
-     * Not sure if all buffers look like these, but this is true for part xcku5p-ffvb676-2-e
-     */
-    public static boolean isNodeBuffer(Design d, String tileName, String nodeName) {
-        Matcher matcher = Pattern.compile("INT_NODE_SDQ_\\d+_INT_OUT\\d+").matcher(nodeName);
-        if (matcher.find()) return true;
-
-        matcher = Pattern.compile("INT_INT_SDQ_\\d+_INT_OUT\\d+").matcher(nodeName);
-        if (matcher.find()) return true;
-
-        matcher = Pattern.compile("INT_NODE_IMUX_\\d+_INT_OUT\\d+").matcher(nodeName);
-        if (matcher.find()) return true;
-
-        matcher = Pattern.compile("BYPASS_W\\d+").matcher(nodeName);
-        if (matcher.find()) return true;
-
-        // Below is general solution
-        boolean hasOutgoingPIPs = false;
-        boolean hasIncomingPIPs = false;
+    public static boolean isClkNode(String wireName) {
+        return CLK_PATTERN.matcher(wireName).find();
+    }
 
-        for (PIP pip : FabricBrowser.getTilePIPs(d, tileName)) {
-            if (getPIPNodeName(tileName, pip.getStartWireName()).equals(nodeName))
-                hasOutgoingPIPs = true;
-            if (getPIPNodeName(tileName, pip.getEndWireName()).equals(nodeName))
-                hasIncomingPIPs = true;
+    public static boolean isBufferWireName(String wireName) {
+        for (Pattern pattern : BUFFER_PATTERNS) {
+            if (pattern.matcher(wireName).find())
+                return true;
         }
-
-        return hasIncomingPIPs && hasOutgoingPIPs;
+        return false;
     }
 
     public static String wireEndTransform(Design d, String baseTileName, String exitWireName) {